@@ -0,0 +1,142 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class EnsembleBenchmark
+ *
+ * @description JMH benchmark of an ensemble of linear reservoirs routed
+ *              through a synthetic tree: once with a <code>Double</code>
+ *              kernel run by a whole simulation of the tree per member, and
+ *              once with an <tt>EnsembleKernel</tt> run by a single
+ *              simulation for all the members.
+ *
+ * @see TreeComponentsBenchmark
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnsembleBenchmark {
+
+    private static final double RECESSION = 0.9; //!< recession coefficient of the reservoirs
+
+    @Param({"65535"})
+    public int size; //!< number of nodes of the basin
+
+    @Param({"16", "64"})
+    public int members; //!< number of members of the ensemble
+
+    private double[] forcing; //!< inflow of each member
+    private volatile int member; //!< member simulated by the scalar kernels
+    private ExecutorService executor; //!< executor of the schedulers
+    private TreeScheduler perMemberScheduler; //!< scheduler of the tree of scalar kernels
+    private TreeScheduler ensembleScheduler; //!< scheduler of the tree of ensemble kernels
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final SyntheticBasin basin = new SyntheticBasin(SyntheticBasin.Shape.RANDOM, size, 0.1, 0.05, 42L);
+        forcing = new double[members];
+        for (int m = 0; m < members; m++)
+            forcing[m] = 1.0 + 0.01 * m;
+
+        final SimulationKernel<Double> scalar = new SimulationKernel<Double>() {
+            public Double simulate(final Connections connKeys, final HydroGeoArea entity,
+                                   final List<Double> upstream) {
+                double inflow = forcing[member];
+                for (Double child : upstream)
+                    inflow += child;
+                return RECESSION * inflow;
+            }
+        };
+        final SimulationKernel<EnsembleState> ensemble = SimulationKernels.ensemble(new EnsembleKernel() {
+            public void simulate(final Connections connKeys, final HydroGeoArea entity,
+                                 final List<EnsembleState> upstream, final EnsembleState state) {
+                final double[] inflow = state.values();
+                System.arraycopy(forcing, 0, inflow, 0, members);
+                for (EnsembleState child : upstream) {
+                    final double[] values = child.values();
+                    for (int m = 0; m < members; m++)
+                        inflow[m] += values[m];
+                }
+                for (int m = 0; m < members; m++)
+                    inflow[m] *= RECESSION;
+            }
+        }, members, 1);
+
+        final Component perMemberRoot = basin.build();
+        for (Component node : perMemberRoot.postOrderTraversal())
+            node.setKernel(scalar);
+        final Component ensembleRoot = basin.build();
+        for (Component node : ensembleRoot.postOrderTraversal())
+            node.setKernel(ensemble);
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        perMemberScheduler = new TreeScheduler(perMemberRoot, executor);
+        ensembleScheduler = new TreeScheduler(ensembleRoot, executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void perMember() throws Exception {
+        for (int m = 0; m < members; m++) {
+            member = m;
+            perMemberScheduler.run();
+        }
+    }
+
+    @Benchmark
+    public void ensemble() throws Exception {
+        ensembleScheduler.run();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class NotifyBenchmark
+ *
+ * @description JMH benchmark of Component#notify(final Key) and
+ *              Component#isReadyForSimulation() on a single <tt>Node</tt>
+ *              shared by several threads: two threads notify the two children
+ *              and reset the flags when the node becomes ready, while two
+ *              other threads poll the readiness.
+ *
+ * @see TreeComponentsBenchmark
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotifyBenchmark {
+
+    private Node node; //!< node under contention
+    private Key[] children; //!< keys of the children of the node
+
+    @Setup
+    public void setUp() {
+        children = new Key[] { new Key(2.0), new Key(3.0) };
+        node = new Node(new Connections(new Key(1.0), new Key(0.0), children), null);
+    }
+
+    /**
+     * @brief Per-thread choice of the child to notify
+     */
+    @State(Scope.Thread)
+    public static class Notifier {
+        private int next; //!< index of the next child to notify
+    }
+
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(2)
+    public boolean notifyChildren(final Notifier notifier) {
+        final boolean ready = node.notify(children[notifier.next]);
+        notifier.next ^= 1;
+        if (ready) node.resetSimulationFlags();
+        return ready;
+    }
+
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(2)
+    public boolean isReadyForSimulation() {
+        return node.isReadyForSimulation();
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class SyntheticBasin
+ *
+ * @description Builder of synthetic binary river networks used by the
+ *              benchmarks. The topology is generated first as plain arrays,
+ *              then turned into <tt>Node</tt>s, <tt>Leaf</tt>s,
+ *              <tt>GhostNode</tt>s and <tt>LocalNode</tt>s sharing a single
+ *              traverser. The root has the ID 1 and the entities are
+ *              <code>null</code>, which the nodes accept.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public final class SyntheticBasin {
+
+    /**
+     * @brief Shape of the synthetic network
+     */
+    public enum Shape {
+        BALANCED, //!< complete binary tree
+        CATERPILLAR, //!< main stem where every node has a leaf tributary
+        RANDOM //!< random splits of the sources, similar to natural networks
+    }
+
+    private final int[] parent; //!< parent of each node, -1 for the root
+    private final int[][] children; //!< children of each node
+    private final boolean[] ghost; //!< TRUE if the node is a ghost node
+    private final boolean[] local; //!< TRUE if the node is a local node
+
+    /**
+     * @brief Generate the topology of a synthetic network
+     *
+     * @description Before decoration every node has either 0 or 2 children.
+     *              A fraction of the nodes with children is then turned into
+     *              ghost nodes, and a fraction of the edges receives a local
+     *              node, which has a single child.
+     *
+     * @param[in] shape The shape of the network
+     * @param[in] size The number of nodes before decoration, at least 1
+     * @param[in] ghostFraction The fraction of nodes with children which are
+     *            ghost nodes
+     * @param[in] localFraction The fraction of edges where a local node is
+     *            inserted
+     * @param[in] seed The seed of the random generator
+     */
+    public SyntheticBasin(final Shape shape, final int size, final double ghostFraction,
+                          final double localFraction, final long seed) {
+
+        final Random random = new Random(seed);
+        final int n = (size % 2 == 0) ? size + 1 : size; // full binary trees have an odd size
+        final int[] base = binaryParents(shape, n, random);
+
+        // local nodes inserted on the edges
+        final ArrayList<Integer> edges = new ArrayList<Integer>();
+        for (int i = 1; i < n; i++)
+            if (random.nextDouble() < localFraction) edges.add(i);
+
+        final int total = n + edges.size();
+        parent = new int[total];
+        System.arraycopy(base, 0, parent, 0, n);
+        local = new boolean[total];
+        for (int e = 0; e < edges.size(); e++) {
+            final int child = edges.get(e);
+            final int inserted = n + e;
+            parent[inserted] = parent[child];
+            parent[child] = inserted;
+            local[inserted] = true;
+        }
+
+        final int[] count = new int[total];
+        for (int i = 1; i < total; i++)
+            count[parent[i]]++;
+        children = new int[total][];
+        for (int i = 0; i < total; i++)
+            children[i] = new int[count[i]];
+        final int[] fill = new int[total];
+        for (int i = 1; i < total; i++)
+            children[parent[i]][fill[parent[i]]++] = i;
+
+        ghost = new boolean[total];
+        for (int i = 1; i < total; i++)
+            if (!local[i] && children[i].length == 2 && random.nextDouble() < ghostFraction) ghost[i] = true;
+
+    }
+
+    /**
+     * @brief The parents of a full binary tree of the given shape
+     *
+     * @description The node 0 is the root.
+     */
+    private static int[] binaryParents(final Shape shape, final int n, final Random random) {
+
+        final int[] parent = new int[n];
+        parent[0] = -1;
+
+        switch (shape) {
+        case BALANCED:
+            for (int i = 1; i < n; i++)
+                parent[i] = (i - 1) / 2;
+            break;
+        case CATERPILLAR:
+            for (int i = 1; i < n; i += 2) {
+                final int stem = (i == 1) ? 0 : i - 1;
+                parent[i] = stem; // leaf tributary
+                parent[i + 1] = stem; // next node of the main stem
+            }
+            break;
+        case RANDOM:
+            final ArrayList<Integer> sources = new ArrayList<Integer>();
+            sources.add(0);
+            for (int i = 1; i < n; i += 2) {
+                final int split = sources.remove(random.nextInt(sources.size()));
+                parent[i] = split;
+                parent[i + 1] = split;
+                sources.add(i);
+                sources.add(i + 1);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+
+        return parent;
+
+    }
+
+    /**
+     * @brief The number of nodes of the network
+     *
+     * @return The number of nodes, local nodes included
+     */
+    public int size() {
+        return parent.length;
+    }
+
+    /**
+     * @brief Build the nodes of the network
+     *
+     * @return The root of the tree, whose nodes share one traverser
+     */
+    public Component build() {
+
+        final int total = parent.length;
+        final Key[] keys = new Key[total];
+        for (int i = 0; i < total; i++)
+            keys[i] = new Key((double) (i + 1));
+
+        final Component[] nodes = new Component[total];
+        for (int i = 0; i < total; i++) {
+            final Key[] childKeys = new Key[children[i].length];
+            for (int k = 0; k < childKeys.length; k++)
+                childKeys[k] = keys[children[i][k]];
+            final Key parentKey = (parent[i] < 0) ? new Key(0.0) : keys[parent[i]];
+            final Connections connKeys = new Connections(keys[i], parentKey, childKeys);
+
+            if (children[i].length == 0) nodes[i] = new Leaf(connKeys, null);
+            else if (local[i]) nodes[i] = new LocalNode(connKeys, null);
+            else if (ghost[i]) nodes[i] = new GhostNode(connKeys, null);
+            else nodes[i] = new Node(connKeys, null);
+        }
+
+        final IdentityHashMap<Component, List<Component>> links
+            = new IdentityHashMap<Component, List<Component>>(total);
+        for (int i = 0; i < total; i++) {
+            final ArrayList<Component> list = new ArrayList<Component>(children[i].length);
+            for (int child : children[i])
+                list.add(nodes[child]);
+            links.put(nodes[i], Collections.unmodifiableList(list));
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component root) {
+                return links.get(root);
+            }
+        };
+        for (Component node : nodes)
+            node.setTraverser(traverser);
+
+        return nodes[0];
+
+    }
+
+}
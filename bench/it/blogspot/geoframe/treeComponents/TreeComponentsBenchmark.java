@@ -0,0 +1,173 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @brief class TreeComponentsBenchmark
+ *
+ * @description JMH benchmarks of the construction, traversal and scheduling
+ *              of synthetic trees of <tt>Component</tt>s.
+ *              <p>
+ *              The benchmarks live in the <tt>bench</tt> source folder and
+ *              need <tt>jmh-core</tt> and <tt>jmh-generator-annprocess</tt> on
+ *              the classpath together with the jars in <tt>lib</tt> and the
+ *              submodules, as declared by the Maven build, which runs them
+ *              with
+ *              <code>mvn compile exec:exec -Dbenchmarks=TreeComponents</code>.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeComponentsBenchmark {
+
+    @Param({"1023", "65535"})
+    public int size; //!< number of nodes before decoration
+
+    @Param({"BALANCED", "CATERPILLAR", "RANDOM"})
+    public SyntheticBasin.Shape shape; //!< shape of the network
+
+    @Param({"0.1"})
+    public double ghostFraction; //!< fraction of ghost nodes
+
+    @Param({"0.05"})
+    public double localFraction; //!< fraction of edges with a local node
+
+    private SyntheticBasin basin; //!< topology of the network
+    private Component root; //!< root of the built tree
+    private List<Component> nodes; //!< nodes of the built tree
+    private ExecutorService executor; //!< executor of the schedulers
+    private TreeScheduler treeScheduler; //!< notify-driven scheduler
+    private PipelinedScheduler pipelinedScheduler; //!< pipelined scheduler
+    private SimulationTracer tracer; //!< tracer of the traced runs
+    private final TraversalCursor cursor = new TraversalCursor(); //!< reused cursor
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        basin = new SyntheticBasin(shape, size, ghostFraction, localFraction, 42L);
+        root = basin.build();
+        nodes = root.postOrderTraversal();
+        for (Component node : nodes)
+            node.setKernel(SimulationKernels.noOp());
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        treeScheduler = new TreeScheduler(root, executor);
+        pipelinedScheduler = new PipelinedScheduler(root, executor, 4);
+        tracer = new SimulationTracer(nodes.size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Component construction() {
+        return basin.build();
+    }
+
+    @Benchmark
+    public void allocateSimulationFlags() {
+        for (Component node : nodes)
+            node.allocateSimulationFlags();
+    }
+
+    @Benchmark
+    public void resetSimulationFlags() {
+        for (Component node : nodes)
+            node.resetSimulationFlags();
+    }
+
+    @Benchmark
+    public FlatTree flatTree() {
+        return FlatTree.of(root);
+    }
+
+    @Benchmark
+    public List<Component> preOrderList() {
+        return root.preOrderTraversal();
+    }
+
+    @Benchmark
+    public void preOrderVisitor(final Blackhole blackhole) {
+        root.preOrderTraversal(new Consumer<Component>() {
+            public void accept(final Component node) {
+                blackhole.consume(node);
+            }
+        });
+    }
+
+    @Benchmark
+    public void postOrderCursor(final Blackhole blackhole) {
+        for (root.postOrderCursor(cursor); cursor.hasNext();)
+            blackhole.consume(cursor.next());
+    }
+
+    @Benchmark
+    public void treeSchedulerNoOp() throws Exception {
+        treeScheduler.run();
+    }
+
+    @Benchmark
+    public void treeSchedulerNoOpTraced() throws Exception {
+        SimulationTracer.install(tracer);
+        try {
+            treeScheduler.run();
+        } finally {
+            SimulationTracer.install(null);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void pipelinedSchedulerNoOp() throws Exception {
+        pipelinedScheduler.run(16, null);
+    }
+
+}
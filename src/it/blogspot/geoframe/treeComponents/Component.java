@@ -18,10 +18,15 @@
  */
 package it.blogspot.geoframe.treeComponents;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import org.geotools.graph.util.geom.Coordinate2D;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.TreeTraverser;
 
 import it.blogspot.geoframe.Connections;
@@ -43,6 +48,15 @@ import it.blogspot.geoframe.key.Key;
  */
 public abstract class Component {
 
+    static final int NO_STEP = -1; //!< step of the executions without time steps
+
+    private volatile SimulationKernel<?> kernel = SimulationKernels.placeholder(); //!< model run by the node
+    private volatile Object simulationResult; //!< result of the last simulation
+    private volatile long readyNanos; //!< time the node was submitted, only while tracing
+    private final AtomicLong topologyVersion = new AtomicLong(); //!< bumped when the subtree changes
+    private volatile Component downstream; //!< parent met by the last traversal of an ancestor, null after a change
+    private volatile TraversalCache traversalCache; //!< memoized traversals of the subtree
+
     /**
      * @brief <tt>notify</tt> method from <strong>Observer Pattern</strong>
      * @cite freeman2004:head
@@ -51,8 +65,27 @@ public abstract class Component {
      *              the computation of their simulation is finished.
      *
      * @param[in] child The key of the child whose computation is finished
+     * @retval TRUE if this notification made the node ready for the simulation
+     * @retval FALSE otherwise
      */
-    public void notify(final Key child) {
+    public boolean notify(final Key child) {
+        return notify(child, null);
+    }
+
+    /**
+     * @brief <tt>notify</tt> method carrying the result of the child
+     *
+     * @description The result is handed to the kernel of this node as one of
+     *              its upstream results.
+     *
+     * @see Component#notify(final Key)
+     *
+     * @param[in] child The key of the child whose computation is finished
+     * @param[in] result The result of the simulation of the child
+     * @retval TRUE if this notification made the node ready for the simulation
+     * @retval FALSE otherwise
+     */
+    public boolean notify(final Key child, final Object result) {
         throw new UnsupportedOperationException("Method not implemented for class LEAF");
     }
 
@@ -71,13 +104,225 @@ public abstract class Component {
      *              <ol>
      *              <li><strong>precondition</strong> to check if the argument
      *              in input is actually the parent;</li>
-     *              <li>the simulation to run;</li>
+     *              <li>the simulation to run, delegated to the
+     *              <tt>SimulationKernel</tt> of the node;</li>
      *              <li>the notification to the parent that the simulation is
      *              finished.</li>
      *              </ol>
-     * @param[in] parent The parent node
+     *              A <code>null</code> parent makes the node the root of the
+     *              simulated tree, e.g. of a subtree or of a single
+     *              <tt>Leaf</tt>: its result is kept and nobody is notified.
+     * @param[in] parent The parent node, <code>null</code> for the root of
+     *            the simulated tree
+     * @retval TRUE if the notification of this node made the parent ready
+     *         for the simulation
+     * @retval FALSE otherwise, or if this node is the root
+     */
+    abstract public boolean runSimulation(final Component parent);
+
+    /**
+     * @brief Set the model run by the node
+     *
+     * @param[in] kernel The kernel of the simulation
+     * @exception NullPointerException
+     *                if the kernel is null
+     */
+    public void setKernel(final SimulationKernel<?> kernel) {
+        if (kernel == null) throw new NullPointerException("Kernel cannot be null."); // precondition
+        this.kernel = kernel;
+    }
+
+    /**
+     * @brief Get the model run by the node
+     *
+     * @return The kernel of the simulation, SimulationKernels#placeholder()
+     *         if none has been set
+     */
+    public SimulationKernel<?> getKernel() {
+        return kernel;
+    }
+
+    /**
+     * @brief Get the result of the last simulation of the node
+     *
+     * @return The result computed by the kernel, <code>null</code> if the
+     *         node has not been simulated yet
      */
-    abstract public void runSimulation(final Component parent);
+    public Object getSimulationResult() {
+        return simulationResult;
+    }
+
+    /**
+     * @brief Restore the result of a simulation run before a restart
+     *
+     * @description Used when resuming from a <tt>SimulationCheckpoint</tt>,
+     *              without running the kernel.
+     *
+     * @param[in] result The result of the simulation of the node
+     */
+    void restoreSimulationResult(final Object result) {
+        simulationResult = result;
+    }
+
+    /**
+     * @brief The computation phase of the simulation
+     *
+     * @description This method is called by Component#runSimulation(final
+     *              Component) without holding any lock of the node, with the
+     *              snapshot of the connections read at the beginning of the
+     *              simulation: a concurrent
+     *              Component#setNewConnections(final Connections) never
+     *              changes the data of a running computation, and getters and
+     *              notifications are never blocked by it. It runs the kernel
+     *              of the node on the results of the children.
+     *
+     * @param[in] connKeys The connections of the node
+     * @return The result of the simulation
+     */
+    protected Object computeSimulation(final Connections connKeys) {
+        return computeSimulation(connKeys, upstreamResults());
+    }
+
+    /**
+     * @brief Run the kernel of the node on the given upstream results
+     *
+     * @description Used by the executions which deliver the results of the
+     *              children on their own instead of through
+     *              Component#notify(final Key, final Object).
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] upstream The results of the children, in the order of
+     *            Connections#getChildren()
+     * @return The result of the simulation
+     */
+    Object computeSimulation(final Connections connKeys, final List<?> upstream) {
+        return computeSimulation(connKeys, upstream, NO_STEP);
+    }
+
+    /**
+     * @brief Run the kernel of the node on the given upstream results of a
+     *        time step
+     *
+     * @description A <tt>StepKernel</tt> receives the index of the step.
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] upstream The results of the children, in the order of
+     *            Connections#getChildren()
+     * @param[in] step The index of the step, <tt>NO_STEP</tt> for none
+     * @return The result of the simulation
+     */
+    Object computeSimulation(final Connections connKeys, final List<?> upstream, final int step) {
+        final SimulationTracer tracer = SimulationTracer.installed();
+        final SimulationMetrics metrics = SimulationMetrics.installed();
+        if (tracer == null && metrics == null) {
+            final Object result = simulate(kernel, connKeys, getEntity(), upstream, step);
+            simulationResult = result;
+            return result;
+        }
+
+        final long ready = readyNanos;
+        readyNanos = 0L;
+        if (metrics != null) {
+            final long wait = childrenWaitNanos();
+            if (wait >= 0L) metrics.recordChildrenWait(this, connKeys.getID(), wait);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final Object result = simulate(kernel, connKeys, getEntity(), upstream, step);
+            simulationResult = result;
+            return result;
+        } finally {
+            final long end = System.nanoTime();
+            if (tracer != null) tracer.record(connKeys, ready, start, end);
+            if (metrics != null) metrics.recordExecution(this, connKeys.getID(), end - start);
+        }
+    }
+
+    /**
+     * @brief The time the node waited for its children
+     *
+     * @description Measured only while <tt>SimulationMetrics</tt> are
+     *              installed, from the allocation or reset of the simulation
+     *              flags until the last child notified the node.
+     *
+     * @return The wait in nanoseconds, negative if it was not measured or the
+     *         node has no children
+     */
+    protected long childrenWaitNanos() {
+        return -1L;
+    }
+
+    /**
+     * @brief Notify the parent of the end of the simulation of this node
+     *
+     * @description The latency of the notification is recorded while
+     *              <tt>SimulationMetrics</tt> are installed.
+     *
+     * @param[in] parent The parent of the node
+     * @param[in] child The key of this node
+     * @param[in] result The result of the simulation of this node
+     * @retval TRUE if this notification made the parent ready for the
+     *         simulation
+     * @retval FALSE otherwise
+     */
+    protected final boolean notifyParent(final Component parent, final Key child, final Object result) {
+        final SimulationMetrics metrics = SimulationMetrics.installed();
+        if (metrics == null) return parent.notify(child, result);
+
+        final long start = System.nanoTime();
+        final boolean ready = parent.notify(child, result);
+        metrics.recordNotify(this, child, System.nanoTime() - start);
+        return ready;
+    }
+
+    /**
+     * @brief Acquire the lock guarding the state of the node
+     *
+     * @description The uncontended acquisition is a single attempt; the
+     *              time spent waiting for a lock held by another thread is
+     *              recorded while <tt>SimulationMetrics</tt> are installed.
+     *
+     * @param[in] lock The lock of the node
+     */
+    protected final void acquire(final ReentrantLock lock) {
+        if (lock.tryLock()) return;
+
+        final SimulationMetrics metrics = SimulationMetrics.installed();
+        if (metrics == null) {
+            lock.lock();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        lock.lock();
+        final Connections connKeys = getConnections();
+        if (connKeys != null) metrics.recordLockWait(this, connKeys.getID(), System.nanoTime() - start);
+    }
+
+    /**
+     * @brief Record that the node has been submitted for the simulation
+     *
+     * @description Called by the schedulers queueing the node, so that the
+     *              <tt>SimulationTracer</tt> measures the wait in the queue.
+     *              It does nothing when the tracing is disabled.
+     */
+    void markReady() {
+        if (SimulationTracer.installed() != null) readyNanos = System.nanoTime();
+    }
+
+    /**
+     * @brief The results of the children of the node
+     *
+     * @description They are meaningful only when the node is ready for the
+     *              simulation.
+     *
+     * @return The results of the children, in the order of
+     *         Connections#getChildren()
+     */
+    protected List<Object> upstreamResults() {
+        return Collections.emptyList();
+    }
 
     /**
      * @brief Set the connection of the node
@@ -148,19 +393,150 @@ public abstract class Component {
      * @brief Compute the <strong>Preorder</strong> <code>List</code> of nodes
      *        in the subtree with <tt>this</tt> as main vertex
      *
+     * @description The list is memoized until the topology of the subtree
+     *              changes, see Component#getTopologyVersion().
+     *
      * @todo return an HashMap of Key, HydroGeoEntity
      * @return The <strong>Preorder</strong> <code>List</code> of nodes
      */
-    abstract public List<Component> preOrderTraversal();
+    public List<Component> preOrderTraversal() {
+        return traversalCache().preOrder();
+    }
 
     /**
      * @brief Compute the <strong>Postorder</strong> <code>List</code> of nodes
      *        in the subtree with <tt>this</tt> as main vertex
      *
+     * @description The list is memoized until the topology of the subtree
+     *              changes, see Component#getTopologyVersion().
+     *
      * @todo return an HashMap of Key, HydroGeoEntity
      * @return The <strong>Postorder</strong> <code>List</code> of nodes
      */
-    abstract public List<Component> postOrderTraversal();
+    public List<Component> postOrderTraversal() {
+        return traversalCache().postOrder();
+    }
+
+    /**
+     * @brief Visit the nodes of the subtree with <tt>this</tt> as main vertex
+     *        in <strong>Preorder</strong>
+     *
+     * @description The nodes are streamed from the traverser to the visitor,
+     *              without building a <code>List</code> and without taking the
+     *              lock of the node.
+     *
+     * @param[in] visitor The visitor of each node
+     */
+    public void preOrderTraversal(final Consumer<? super Component> visitor) {
+        for (Component node : traverser().preOrderTraversal(this))
+            visitor.accept(node);
+    }
+
+    /**
+     * @brief Visit the nodes of the subtree with <tt>this</tt> as main vertex
+     *        in <strong>Postorder</strong>
+     *
+     * @see Component#preOrderTraversal(final Consumer)
+     *
+     * @param[in] visitor The visitor of each node
+     */
+    public void postOrderTraversal(final Consumer<? super Component> visitor) {
+        for (Component node : traverser().postOrderTraversal(this))
+            visitor.accept(node);
+    }
+
+    /**
+     * @brief The cached flat representation of the subtree with <tt>this</tt>
+     *        as main vertex
+     *
+     * @description The subtree is built at the first call and kept until its
+     *              topology changes. Together with a <tt>TraversalCursor</tt>
+     *              it allows to traverse the subtree any number of times
+     *              without allocating memory.
+     *
+     * @return The flat subtree, whose root is <tt>this</tt>
+     */
+    public FlatTree subtree() {
+        return traversalCache().tree;
+    }
+
+    /**
+     * @brief The version of the topology of the subtree with <tt>this</tt> as
+     *        main vertex
+     *
+     * @description The version is incremented whenever the connections of
+     *              the node or of one of its descendants change, or the
+     *              traverser of the node is replaced. Memoized traversals are
+     *              valid as long as the version does not change.
+     *
+     * @return The topology version
+     */
+    public long getTopologyVersion() {
+        return topologyVersion.get();
+    }
+
+    /**
+     * @brief Move a cursor at the beginning of the <strong>Preorder</strong>
+     *        traversal of the cached subtree
+     *
+     * @param[in] cursor The cursor to reuse
+     * @return The cursor
+     */
+    public TraversalCursor preOrderCursor(final TraversalCursor cursor) {
+        final FlatTree tree = subtree();
+        return cursor.preOrder(tree, tree.root());
+    }
+
+    /**
+     * @brief Move a cursor at the beginning of the <strong>Postorder</strong>
+     *        traversal of the cached subtree
+     *
+     * @param[in] cursor The cursor to reuse
+     * @return The cursor
+     */
+    public TraversalCursor postOrderCursor(final TraversalCursor cursor) {
+        final FlatTree tree = subtree();
+        return cursor.postOrder(tree, tree.root());
+    }
+
+    /**
+     * @brief Get the traverser of the tree
+     *
+     * @return The traverser, <code>null</code> if it has not been set
+     */
+    protected abstract TreeTraverser<Component> getTraverser();
+
+    /**
+     * @brief Invalidate the memoized traversals of the node and of its
+     *        ancestors
+     *
+     * @description To be called whenever the connections of the node change.
+     *              The ancestors are the parents met by the last traversals of
+     *              the tree: a node never traversed from above has no memoized
+     *              ancestor to invalidate. The parent recorded by the node is
+     *              forgotten, since it may no longer be its parent, until a
+     *              traversal from above records it again: a stale parent could
+     *              otherwise lead the walk of a later change into a cycle.
+     */
+    protected void invalidateTopology() {
+
+        final Component parent = downstream;
+        downstream = null;
+        topologyVersion.incrementAndGet();
+        for (Component node = parent; node != null; node = node.downstream)
+            node.topologyVersion.incrementAndGet();
+
+    }
+
+    /**
+     * @brief Invalidate the memoized traversals of the node only
+     *
+     * @description To be called whenever the traverser of the node changes,
+     *              which does not affect the traversals of the ancestors.
+     */
+    protected void invalidateTraversals() {
+        topologyVersion.incrementAndGet();
+    }
 
     /**
      * @brief Method to implement in order to check if states are null
@@ -181,6 +557,140 @@ public abstract class Component {
      */
     abstract protected void allocateSimulationFlags();
 
+    /**
+     * @brief Mark every child as not finished, without reallocating the flags
+     *
+     * @description The default implementation reallocates them; nodes with
+     *              children override it with a cheaper reset.
+     */
+    protected void resetSimulationFlags() {
+        allocateSimulationFlags();
+    }
+
+    /**
+     * @brief It returns if the connections belong to the root of the tree
+     *
+     * @description The root of the tree is identified by the ID equal to 1.
+     *
+     * @param[in] connKeys The connections of the node
+     * @retval TRUE if the node is the root
+     * @retval FALSE otherwise
+     */
+    protected static boolean isRoot(final Connections connKeys) {
+        return connKeys.getID().getDouble().doubleValue() == 1.0;
+    }
+
+    /**
+     * @brief Record in each node of a tree its parent in that tree
+     *
+     * @description The recorded parents are the path followed by
+     *              Component#invalidateTopology(); a node shared by several
+     *              trees follows the last one recorded.
+     *
+     * @param[in] tree The tree
+     */
+    static void recordParents(final FlatTree tree) {
+        for (int i = 0; i < tree.root(); i++)
+            tree.component(i).downstream = tree.component(tree.parent(i));
+    }
+
+    /**
+     * @brief The memoized traversals of the subtree, rebuilt if stale
+     *
+     * @description The version is read before building the subtree, so a
+     *              change of topology happening during the build leaves the
+     *              new cache already stale. Each node of the subtree records
+     *              its parent, which is the path followed by
+     *              Component#invalidateTopology().
+     *
+     * @return The up-to-date memoized traversals
+     */
+    private TraversalCache traversalCache() {
+
+        final TraversalCache cache = traversalCache;
+        final long version = topologyVersion.get();
+        if (cache != null && cache.version == version) return cache;
+
+        final FlatTree tree = FlatTree.of(this);
+        recordParents(tree);
+
+        final TraversalCache fresh = new TraversalCache(version, tree);
+        traversalCache = fresh;
+        return fresh;
+
+    }
+
+    /**
+     * @brief class TraversalCache
+     *
+     * @description Memoized traversals of a subtree at a given topology
+     *              version. The lists are built from the flat subtree the
+     *              first time they are requested.
+     */
+    private static final class TraversalCache {
+
+        private final long version; //!< topology version of the subtree
+        private final FlatTree tree; //!< flat subtree
+        private volatile List<Component> preOrder; //!< memoized preorder list
+        private volatile List<Component> postOrder; //!< memoized postorder list
+
+        private TraversalCache(final long version, final FlatTree tree) {
+            this.version = version;
+            this.tree = tree;
+        }
+
+        private List<Component> preOrder() {
+            List<Component> list = preOrder;
+            if (list == null) {
+                final ImmutableList.Builder<Component> builder = ImmutableList.builder();
+                for (int p = 0; p < tree.size(); p++)
+                    builder.add(tree.component(tree.preOrder(p)));
+                list = builder.build();
+                preOrder = list;
+            }
+            return list;
+        }
+
+        private List<Component> postOrder() {
+            List<Component> list = postOrder;
+            if (list == null) {
+                final ImmutableList.Builder<Component> builder = ImmutableList.builder();
+                for (int i = 0; i < tree.size(); i++)
+                    builder.add(tree.component(i));
+                list = builder.build();
+                postOrder = list;
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * @brief The traverser of the tree, which must have been set
+     *
+     * @exception NullPointerException
+     *                if the traverser has not been set
+     */
+    private TreeTraverser<Component> traverser() {
+        final TreeTraverser<Component> traverser = getTraverser();
+        if (traverser == null) throw new NullPointerException("Traverser not set.");
+        return traverser;
+    }
+
+    /**
+     * @brief Invoke a kernel on the upstream results
+     *
+     * @description All the kernels of a tree share the same result type, as
+     *              required by SimulationKernel, hence the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R simulate(final SimulationKernel<R> kernel, final Connections connKeys,
+                                  final HydroGeoArea entity, final List<?> upstream, final int step) {
+        if (step != NO_STEP && kernel instanceof StepKernel)
+            return ((StepKernel<R>) kernel).simulate(connKeys, entity, (List<R>) upstream, step);
+        return kernel.simulate(connKeys, entity, (List<R>) upstream);
+    }
+
     /**
      * @brief Validate the <tt>layer</tt> of the node in the tree
      *
@@ -188,7 +698,7 @@ public abstract class Component {
      * @exception IllegalArgumentException
      *                if the input layer is equal 0 or negative
      */
-    protected synchronized void validateLayer(final int layer) {
+    protected void validateLayer(final int layer) {
 
         if (layer <= 0) {
             String message = "Layer cannot be 0 or negative";
@@ -206,7 +716,7 @@ public abstract class Component {
      * @exception IllegalArgumentException
      *                if the <tt>x</tt> or <tt>y</tt> coordinates are negative
      */
-    protected synchronized void validateCoordinate(final Coordinate2D point) {
+    protected void validateCoordinate(final Coordinate2D point) {
 
         if (point == null) {
             String message = "The coordinates of a point cannot be null";
@@ -0,0 +1,134 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.function.ToDoubleFunction;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class CriticalPath
+ *
+ * @description Length of the longest remaining path from each node of a
+ *              <tt>FlatTree</tt> to the root, weighted by the cost of each
+ *              node. Since the simulation of a node can start only after its
+ *              children, the remaining path of a node is the node itself plus
+ *              every node downstream of it along the parent links: a node
+ *              with a long remaining path, e.g. the source of the main stem
+ *              of a caterpillar-shaped network, delays the end of the whole
+ *              run if it starts late.
+ *              <p>
+ *              The cost of a node can be an estimate, e.g. the area of its
+ *              entity, or a measured time of a previous run; with the unit
+ *              cost the remaining path is the depth of the node plus one.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public final class CriticalPath {
+
+    private static final ToDoubleFunction<Component> UNIT_COST = new ToDoubleFunction<Component>() {
+        public double applyAsDouble(final Component node) {
+            return 1.0;
+        }
+    }; //!< every node costs 1
+
+    private final double[] remaining; //!< remaining path of each node, the node included
+    private final double length; //!< longest remaining path of the tree
+
+    /**
+     * @brief Compute the remaining paths of a tree
+     *
+     * @param[in] tree The tree
+     * @param[in] cost The cost of each node, which must be non-negative
+     * @return The remaining path of each node of the tree
+     * @exception IllegalArgumentException
+     *                if the cost of a node is negative or not a number
+     */
+    public static CriticalPath of(final FlatTree tree, final ToDoubleFunction<? super Component> cost) {
+        if (tree == null) throw new NullPointerException("Tree cannot be null."); // precondition
+        if (cost == null) throw new NullPointerException("Cost cannot be null."); // precondition
+
+        return new CriticalPath(tree, cost);
+    }
+
+    /**
+     * @brief The cost function giving 1 to each node
+     *
+     * @return The unit cost function
+     */
+    public static ToDoubleFunction<Component> unitCost() {
+        return UNIT_COST;
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @description In reverse postorder each parent precedes its children, so
+     *              a single backward sweep of the indices is enough.
+     */
+    private CriticalPath(final FlatTree tree, final ToDoubleFunction<? super Component> cost) {
+
+        remaining = new double[tree.size()];
+        double longest = 0.0;
+
+        for (int i = tree.root(); i >= 0; i--) {
+            final double c = cost.applyAsDouble(tree.component(i));
+            if (!(c >= 0.0)) {
+                String message = "Negative or undefined cost for ";
+                message += tree.component(i).toString();
+                throw new IllegalArgumentException(message);
+            }
+
+            final int p = tree.parent(i);
+            remaining[i] = c + ((p < 0) ? 0.0 : remaining[p]);
+            longest = Math.max(longest, remaining[i]);
+        }
+
+        length = longest;
+
+    }
+
+    /**
+     * @brief The remaining path of a node
+     *
+     * @param[in] index The index of the node in the <tt>FlatTree</tt>
+     * @return The cost of the node plus the cost of every node downstream
+     */
+    public double remaining(final int index) {
+        return remaining[index];
+    }
+
+    /**
+     * @brief The longest remaining path of the tree
+     *
+     * @description It is a lower bound of the duration of a run with an
+     *              unbounded number of threads.
+     *
+     * @return The length of the critical path
+     */
+    public double length() {
+        return length;
+    }
+
+}
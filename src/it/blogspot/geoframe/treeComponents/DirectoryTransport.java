@@ -0,0 +1,322 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class DirectoryTransport
+ *
+ * @description <tt>PartitionTransport</tt> exchanging the results through
+ *              files of a shared directory, enough to run the partitions of a
+ *              tree in separate processes of the same machine or on a shared
+ *              file system. Each result is serialized to a temporary file,
+ *              which is then atomically renamed after the key of the outlet
+ *              and the number of results already sent by that outlet; the
+ *              receiver counts the results it has read in the same way, polls
+ *              for the file of the next one, reads it and deletes it. A result
+ *              is thus never replaced by the one of the following run, and a
+ *              send finding its file still in place is refused.
+ *              <p>
+ *              The counts survive a restart of either side: the receiver
+ *              records its count in the directory before deleting each file,
+ *              and a restarted receiver deletes the files it had already
+ *              read; a restarted sender continues after the last file still
+ *              waiting to be read, or else from the count of the receiver.
+ *              </p>
+ *              <p>
+ *              The results must be <code>Serializable</code>.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class DirectoryTransport implements PartitionTransport {
+
+    private static final String SUFFIX = ".result"; //!< extension of the result files
+    private static final String COUNT_SUFFIX = ".received"; //!< extension of the counts of the receiver
+
+    private final Path directory; //!< shared directory
+    private final long pollMillis; //!< interval between two checks of the receiver
+    private final long timeoutMillis; //!< longest wait of the receiver
+    private final ConcurrentMap<Double, AtomicLong> sent = new ConcurrentHashMap<>(); //!< results sent per outlet
+    private final ConcurrentMap<Double, AtomicLong> received = new ConcurrentHashMap<>(); //!< results received per outlet
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] directory The shared directory, which must exist
+     * @param[in] pollMillis The interval between two checks of the receiver,
+     *            in milliseconds
+     * @param[in] timeoutMillis The longest wait of the receiver for a result,
+     *            in milliseconds
+     * @exception IllegalArgumentException
+     *                if the directory does not exist or the interval or the
+     *                timeout are not positive
+     */
+    public DirectoryTransport(final Path directory, final long pollMillis, final long timeoutMillis) {
+        if (directory == null) throw new NullPointerException("Directory cannot be null."); // precondition
+        if (!Files.isDirectory(directory)) // precondition
+            throw new IllegalArgumentException(directory + " is not a directory");
+        if (pollMillis <= 0) // precondition
+            throw new IllegalArgumentException("The polling interval must be positive");
+        if (timeoutMillis <= 0) // precondition
+            throw new IllegalArgumentException("The timeout must be positive");
+
+        this.directory = directory;
+        this.pollMillis = pollMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see PartitionTransport#send(final Key, final Object)
+     */
+    public void send(final Key outlet, final Object result) throws IOException {
+
+        final AtomicLong sequence = counterOf(sent, outlet, true);
+        final Path target = fileOf(outlet, sequence.get());
+        if (Files.exists(target))
+            throw new FileAlreadyExistsException(target.toString(), null, "result not yet received");
+
+        final Path temporary = Files.createTempFile(directory, null, ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 ObjectOutputStream out = new ObjectOutputStream(file)) {
+                out.writeObject(result);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        sequence.incrementAndGet();
+
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see PartitionTransport#receive(final Key)
+     */
+    public Object receive(final Key outlet) throws IOException, InterruptedException {
+
+        final AtomicLong sequence = counterOf(received, outlet, false);
+        final Path file = fileOf(outlet, sequence.get());
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!Files.exists(file)) {
+            if (System.nanoTime() - deadline >= 0)
+                throw new IOException("No result of " + outlet + " within " + timeoutMillis + " ms");
+            Thread.sleep(pollMillis);
+        }
+
+        final Object result;
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objects = new ObjectInputStream(in)) {
+            result = objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class of the result of " + outlet, e);
+        }
+        writeCount(outlet, sequence.get() + 1);
+        Files.delete(file);
+        sequence.incrementAndGet();
+
+        return result;
+
+    }
+
+    /**
+     * @brief The counter of the results of an outlet
+     *
+     * @param[in] counters The counters of the sent or of the received results
+     * @param[in] outlet The key of the outlet
+     * @param[in] sender Whether the counter is the one of the sender
+     * @return The counter, created from the files of the directory on the
+     *         first use
+     * @exception IOException
+     *                if the directory cannot be read
+     */
+    private AtomicLong counterOf(final ConcurrentMap<Double, AtomicLong> counters, final Key outlet,
+                                 final boolean sender) throws IOException {
+        final Double id = outlet.getDouble();
+        AtomicLong counter = counters.get(id);
+        if (counter == null) {
+            final AtomicLong created = new AtomicLong(sender ? nextToSend(outlet) : nextToReceive(outlet));
+            counter = counters.putIfAbsent(id, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * @brief The number of the next result a sender ships
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The number following the last file waiting to be read, or the
+     *         count of the receiver if none is waiting
+     * @exception IOException
+     *                if the directory cannot be read
+     */
+    private long nextToSend(final Key outlet) throws IOException {
+
+        long next = readCount(outlet);
+        for (long waiting : pendingOf(outlet))
+            next = Math.max(next, waiting + 1);
+
+        return next;
+
+    }
+
+    /**
+     * @brief The number of the next result a receiver reads
+     *
+     * @description The files the receiver had already read, whose deletion
+     *              was interrupted, are deleted.
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The count of the receiver
+     * @exception IOException
+     *                if the directory cannot be read
+     */
+    private long nextToReceive(final Key outlet) throws IOException {
+
+        final long next = readCount(outlet);
+        for (long stale : pendingOf(outlet))
+            if (stale < next) Files.deleteIfExists(fileOf(outlet, stale));
+
+        return next;
+
+    }
+
+    /**
+     * @brief The numbers of the results of an outlet waiting in the directory
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The numbers of the result files, in no particular order
+     * @exception IOException
+     *                if the directory cannot be read
+     */
+    private List<Long> pendingOf(final Key outlet) throws IOException {
+
+        final String prefix = Double.toString(outlet.getDouble()) + "-";
+        final List<Long> numbers = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.valueOf(name.substring(prefix.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    continue; // not a result file of this transport
+                }
+            }
+        }
+
+        return numbers;
+
+    }
+
+    /**
+     * @brief The count of the results of an outlet read by the receiver
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The count, 0 if it was never recorded
+     * @exception IOException
+     *                if the count cannot be read
+     */
+    private long readCount(final Key outlet) throws IOException {
+
+        final Path file = countOf(outlet);
+        if (!Files.exists(file)) return 0L;
+
+        final String count = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+        try {
+            return Long.parseLong(count);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupted count in " + file, e);
+        }
+
+    }
+
+    /**
+     * @brief Record the count of the results of an outlet read by the
+     *        receiver
+     *
+     * @param[in] outlet The key of the outlet
+     * @param[in] count The count
+     * @exception IOException
+     *                if the count cannot be written
+     */
+    private void writeCount(final Key outlet, final long count) throws IOException {
+
+        final Path temporary = Files.createTempFile(directory, null, ".tmp");
+        try {
+            Files.write(temporary, Long.toString(count).getBytes(StandardCharsets.US_ASCII));
+            Files.move(temporary, countOf(outlet), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+    }
+
+    /**
+     * @brief The file holding the count of the receiver of an outlet
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The path of the file
+     */
+    private Path countOf(final Key outlet) {
+        return directory.resolve(Double.toString(outlet.getDouble()) + COUNT_SUFFIX);
+    }
+
+    /**
+     * @brief The file holding a result of an outlet
+     *
+     * @param[in] outlet The key of the outlet
+     * @param[in] sequence The number of results of the outlet preceding it
+     * @return The path of the file
+     */
+    private Path fileOf(final Key outlet, final long sequence) {
+        return directory.resolve(Double.toString(outlet.getDouble()) + "-" + sequence + SUFFIX);
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * @brief class DoubleIntHashMap
+ *
+ * @description Open-addressing hash map from <code>double</code> keys to
+ *              non-negative <code>int</code> values, with linear probing. It
+ *              is used to look up the dense index of a node from the
+ *              <code>double</code> wrapped by its <tt>Key</tt> without boxing
+ *              and without hashing <tt>Key</tt> objects.
+ *              <p>
+ *              Keys are compared by their bit pattern, as
+ *              <code>Double#equals(Object)</code> does.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@NotThreadSafe
+final class DoubleIntHashMap {
+
+    static final int MISSING = -1; //!< value returned for absent keys, marks empty slots
+
+    private long[] keys; //!< bit patterns of the keys
+    private int[] values; //!< values, MISSING for empty slots
+    private int mask; //!< capacity - 1, capacity is a power of two
+    private int size; //!< number of entries
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] expectedSize The number of entries expected
+     */
+    DoubleIntHashMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @brief Associate a value to a key
+     *
+     * @param[in] key The key
+     * @param[in] value The value, which must be non-negative
+     * @return The previous value, MISSING if the key was absent
+     * @exception IllegalArgumentException
+     *                if the value is negative
+     */
+    int put(final double key, final int value) {
+
+        if (value < 0) throw new IllegalArgumentException("Values cannot be negative");
+
+        final long bits = Double.doubleToLongBits(key);
+        int slot = slot(bits);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == bits) {
+                final int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = bits;
+        values[slot] = value;
+        if (++size > (mask + 1) >> 1) rehash();
+        return MISSING;
+
+    }
+
+    /**
+     * @brief The value associated to a key
+     *
+     * @param[in] key The key
+     * @return The value, MISSING if the key is absent
+     */
+    int get(final double key) {
+
+        final long bits = Double.doubleToLongBits(key);
+        int slot = slot(bits);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == bits) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+
+    }
+
+    /**
+     * @brief The number of entries
+     *
+     * @return The number of keys in the map
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @brief The initial slot of a key
+     *
+     * @description Fibonacci hashing spreads the keys, which often are
+     *              consecutive integers, over the whole table.
+     */
+    private int slot(final long bits) {
+        final long hash = (bits ^ (bits >>> 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    /**
+     * @brief Double the capacity and reinsert every entry
+     */
+    private void rehash() {
+
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate((mask + 1) << 1);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == MISSING) continue;
+
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != MISSING)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @brief The smallest power of two keeping the load factor under 0.5
+     */
+    private static int capacityFor(final int expectedSize) {
+        int capacity = 2;
+        while (capacity < 2 * expectedSize) capacity <<= 1;
+        return capacity;
+    }
+
+}
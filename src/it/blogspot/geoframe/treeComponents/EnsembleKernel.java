@@ -0,0 +1,63 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief interface EnsembleKernel
+ *
+ * @description Model run by each node for all the members of an ensemble at
+ *              once, e.g. the members of a flood forecast sharing the
+ *              topology of the tree. The kernel is adapted to a
+ *              <tt>SimulationKernel</tt> by SimulationKernels#ensemble(final
+ *              EnsembleKernel, final int, final int), so every scheduler
+ *              visits each node once for the whole ensemble, and the cost of
+ *              the scheduling and of the topology is paid once per node
+ *              instead of once per member.
+ *              <p>
+ *              The states are <tt>EnsembleState</tt>s: an implementation
+ *              should loop over the members in its innermost loop, on the
+ *              arrays of the variables, which the JIT vectorizes. The same
+ *              thread-safety rules of <tt>SimulationKernel</tt> apply.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public interface EnsembleKernel {
+
+    /**
+     * @brief Run the simulation of a node for every member
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] entity The entity of the node
+     * @param[in] upstream The states of the children, in the order of
+     *            Connections#getChildren(); empty for a <tt>Leaf</tt>
+     * @param[out] state The state of the node, all zeros, to be filled
+     */
+    void simulate(final Connections connKeys, final HydroGeoArea entity, final List<EnsembleState> upstream,
+                  final EnsembleState state);
+
+}
@@ -0,0 +1,232 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * @brief class EnsembleState
+ *
+ * @description State of every member of an ensemble at a node, stored as a
+ *              <strong>struct of arrays</strong>: a single
+ *              <code>double</code> array holding each state variable for all
+ *              the members, one variable after the other. The value of the
+ *              variable <tt>v</tt> of the member <tt>m</tt> is
+ *              <code>values()[offset(v) + m]</code>, so the loops of an
+ *              <tt>EnsembleKernel</tt> over the members of a variable read
+ *              and write contiguous memory and are vectorized by the JIT.
+ *              <p>
+ *              The state is written by the kernel of its node only and, once
+ *              delivered to the parent, only read. It is
+ *              <code>Serializable</code> and two states with the same shape
+ *              and values are equal, so it can be checkpointed, spilled by a
+ *              <tt>ResultCache</tt> and moved through a
+ *              <tt>DirectoryTransport</tt>.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@NotThreadSafe
+public final class EnsembleState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int members; //!< number of members of the ensemble
+    private final int variables; //!< number of state variables of each member
+    private final double[] values; //!< values of each variable for all the members
+
+    /**
+     * @brief Constructor
+     *
+     * @description Every value is zero.
+     *
+     * @param[in] members The number of members of the ensemble
+     * @param[in] variables The number of state variables of each member
+     * @exception IllegalArgumentException
+     *                if a size is not positive or the state is too large
+     */
+    public EnsembleState(final int members, final int variables) {
+        if (members <= 0 || variables <= 0) // precondition
+            throw new IllegalArgumentException("The members and the variables must be positive");
+        if ((long) members * variables > Integer.MAX_VALUE) // precondition
+            throw new IllegalArgumentException("The state of " + members + " members is too large");
+
+        this.members = members;
+        this.variables = variables;
+        values = new double[members * variables];
+    }
+
+    /**
+     * @brief The number of members of the ensemble
+     *
+     * @return The number of members
+     */
+    public int getMembers() {
+        return members;
+    }
+
+    /**
+     * @brief The number of state variables of each member
+     *
+     * @return The number of variables
+     */
+    public int getVariables() {
+        return variables;
+    }
+
+    /**
+     * @brief The values of all the variables of all the members
+     *
+     * @return The backing array, not a copy
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * @brief The position of the first member of a variable in
+     *        EnsembleState#values()
+     *
+     * @param[in] variable The index of the variable
+     * @return The offset of the variable
+     */
+    public int offset(final int variable) {
+        if (variable < 0 || variable >= variables) // precondition
+            throw new IndexOutOfBoundsException("Variable " + variable + " out of " + variables);
+
+        return variable * members;
+    }
+
+    /**
+     * @brief The value of a variable of a member
+     *
+     * @param[in] variable The index of the variable
+     * @param[in] member The index of the member
+     * @return The value
+     */
+    public double get(final int variable, final int member) {
+        return values[offset(variable) + checkMember(member)];
+    }
+
+    /**
+     * @brief Set the value of a variable of a member
+     *
+     * @param[in] variable The index of the variable
+     * @param[in] member The index of the member
+     * @param[in] value The value
+     */
+    public void set(final int variable, final int member, final double value) {
+        values[offset(variable) + checkMember(member)] = value;
+    }
+
+    /**
+     * @brief It returns if another state has the same members and variables
+     *
+     * @param[in] other The other state
+     * @retval TRUE if the two states have the same shape
+     * @retval FALSE otherwise
+     */
+    public boolean hasShapeOf(final EnsembleState other) {
+        return other.members == members && other.variables == variables;
+    }
+
+    /**
+     * @brief Value equality of two states
+     *
+     * @param[in] other The other object
+     * @retval TRUE if the other object is a state of the same shape with the
+     *         same values, NaN included
+     * @retval FALSE otherwise
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) return true;
+        if (!(other instanceof EnsembleState)) return false;
+
+        final EnsembleState that = (EnsembleState) other;
+        return hasShapeOf(that) && Arrays.equals(values, that.values);
+    }
+
+    /**
+     * @brief Hash code consistent with EnsembleState#equals(final Object)
+     *
+     * @description It changes with the values: a state must not be modified
+     *              while it is a key of a hash table.
+     *
+     * @return The hash code of the shape and of the values
+     */
+    @Override
+    public int hashCode() {
+        return (members * 31 + variables) * 31 + Arrays.hashCode(values);
+    }
+
+    /**
+     * @brief Validate a deserialized state
+     *
+     * @param[in] in The stream of the state
+     * @exception InvalidObjectException
+     *                if the values do not match the shape
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (members <= 0 || variables <= 0 || values == null || values.length != (long) members * variables)
+            throw new InvalidObjectException("The values do not match " + members + " members x " + variables
+                                             + " variables");
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> ";
+        tmp += members + " members x " + variables + " variables";
+        if (values.length <= 16) tmp += " " + Arrays.toString(values);
+
+        return tmp;
+
+    }
+
+    /**
+     * @brief Validate the index of a member
+     *
+     * @param[in] member The index of the member
+     * @return The index
+     */
+    private int checkMember(final int member) {
+        if (member < 0 || member >= members) // precondition
+            throw new IndexOutOfBoundsException("Member " + member + " out of " + members);
+
+        return member;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class ExecutionMetrics
+ *
+ * @description Durations measured for a node, or aggregated over a group of
+ *              nodes, by the <tt>SimulationMetrics</tt>:
+ *              <ul>
+ *              <li><strong>execution</strong>: the run of the kernel;</li>
+ *              <li><strong>children wait</strong>: from the allocation or
+ *              reset of the simulation flags until the last child notified
+ *              the node;</li>
+ *              <li><strong>notify latency</strong>: the notification of the
+ *              parent at the end of the simulation;</li>
+ *              <li><strong>lock wait</strong>: the acquisitions of the lock
+ *              of the node which found it held by another thread.</li>
+ *              </ul>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class ExecutionMetrics {
+
+    private final Key key; //!< key of the node, null for an aggregate
+    private final Class<? extends Component> type; //!< type of the node, null for an aggregate
+    private final LatencyHistogram execution = new LatencyHistogram(); //!< runs of the kernel
+    private final LatencyHistogram childrenWait = new LatencyHistogram(); //!< waits for the children
+    private final LatencyHistogram notifyLatency = new LatencyHistogram(); //!< notifications of the parent
+    private final LatencyHistogram lockWait = new LatencyHistogram(); //!< contended lock acquisitions
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] key The key of the node, <code>null</code> for an aggregate
+     * @param[in] type The type of the node, <code>null</code> for an
+     *            aggregate
+     */
+    ExecutionMetrics(final Key key, final Class<? extends Component> type) {
+        this.key = key;
+        this.type = type;
+    }
+
+    /**
+     * @brief Add the samples of other metrics
+     *
+     * @param[in] other The metrics to add
+     */
+    void merge(final ExecutionMetrics other) {
+        execution.merge(other.execution);
+        childrenWait.merge(other.childrenWait);
+        notifyLatency.merge(other.notifyLatency);
+        lockWait.merge(other.lockWait);
+    }
+
+    /**
+     * @brief The key of the node
+     *
+     * @return The key, <code>null</code> for an aggregate
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * @brief The type of the node
+     *
+     * @return The type, <code>null</code> for an aggregate
+     */
+    public Class<? extends Component> getType() {
+        return type;
+    }
+
+    /**
+     * @brief The runs of the kernel
+     *
+     * @return The histogram of the execution times
+     */
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+
+    /**
+     * @brief The waits for the children
+     *
+     * @return The histogram of the times from the reset of the flags until
+     *         the readiness
+     */
+    public LatencyHistogram getChildrenWait() {
+        return childrenWait;
+    }
+
+    /**
+     * @brief The notifications of the parent
+     *
+     * @return The histogram of the notify latencies
+     */
+    public LatencyHistogram getNotifyLatency() {
+        return notifyLatency;
+    }
+
+    /**
+     * @brief The contended acquisitions of the lock of the node
+     *
+     * @return The histogram of the lock waits, whose count is the number of
+     *         contentions
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        if (key != null) tmp += "  ==> key: " + key + ", type: " + type.getSimpleName();
+        tmp += "\n  execution:      " + execution;
+        tmp += "\n  children wait:  " + childrenWait;
+        tmp += "\n  notify latency: " + notifyLatency;
+        tmp += "\n  lock wait:      " + lockWait;
+
+        return tmp;
+
+    }
+
+}
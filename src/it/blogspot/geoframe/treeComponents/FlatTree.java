@@ -0,0 +1,384 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class FlatTree
+ *
+ * @description Frozen, array-based representation of a tree of
+ *              <tt>Component</tt>s. Each node is identified by an
+ *              <code>int</code> index equal to its position in the
+ *              <strong>Postorder</strong> traversal of the tree, so the root
+ *              is the last node and the subtree of a node is the contiguous
+ *              range of indices ending with the node itself. The children are
+ *              stored in compressed rows: the children of the node
+ *              <tt>i</tt> are <code>childIndex[childOffset[i]]</code> to
+ *              <code>childIndex[childOffset[i + 1] - 1]</code>, in the order
+ *              of Connections#getChildren().
+ *              <p>
+ *              The <strong>Preorder</strong> traversal is stored as well: in
+ *              that order the subtree of a node is again a contiguous range,
+ *              starting with the node itself.
+ *              </p>
+ *              <p>
+ *              The representation does not follow later changes of the
+ *              connections of the nodes: a new one has to be built after
+ *              Component#setNewConnections(final Connections).
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public final class FlatTree {
+
+    private final Component[] nodes; //!< nodes in postorder
+    private final int[] parent; //!< index of the parent, -1 for the root
+    private final int[] childOffset; //!< first position of the children of each node in childIndex
+    private final int[] childIndex; //!< indices of the children of each node
+    private final int[] subtreeSize; //!< number of nodes in the subtree of each node
+    private final int[] preOrder; //!< node indices in preorder
+    private final int[] preOrderPosition; //!< position of each node in preorder
+    private final DoubleIntHashMap indexById; //!< index of each node by the value of its key
+
+    /**
+     * @brief Build the flat representation of a tree
+     *
+     * @description The nodes are collected through
+     *              Component#preOrderTraversal(final Consumer), hence the
+     *              traverser of the root must have been set.
+     *
+     * @param[in] root The root of the tree
+     * @return The flat representation of the tree
+     * @exception NullPointerException
+     *                if the root is null
+     * @exception IllegalArgumentException
+     *                if a node is not connected with a node of the tree
+     */
+    public static FlatTree of(final Component root) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        final ArrayList<Component> discovered = new ArrayList<Component>();
+        root.preOrderTraversal(new Consumer<Component>() {
+            public void accept(final Component node) {
+                discovered.add(node);
+            }
+        });
+        return new FlatTree(root, discovered);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree
+     * @param[in] discovered The nodes of the tree in preorder
+     */
+    private FlatTree(final Component root, final List<Component> discovered) {
+
+        final int size = discovered.size();
+
+        // temporary indices in discovery order
+        final DoubleIntHashMap discoveryIndex = new DoubleIntHashMap(size);
+        for (int i = 0; i < size; i++)
+            discoveryIndex.put(discovered.get(i).getConnections().getID().getDouble(), i);
+
+        final int[] discoveryParent = new int[size];
+        final int[] discoveryChildOffset = new int[size + 1];
+        final int[] discoveryChildIndex = new int[size];
+        countChildren(root, discovered, discoveryIndex, discoveryParent, discoveryChildOffset);
+        fillChildren(discovered, discoveryIndex, discoveryParent, discoveryChildOffset, discoveryChildIndex);
+
+        // preorder and postorder visits following the order of the children
+        final int[] discoveryPost = new int[size];
+        final int[] discoveryPreOrder = new int[size];
+        final int[] stack = new int[size];
+        final int[] next = new int[size];
+        int top = 0;
+        int pre = 0;
+        int post = 0;
+        final int rootIndex = discoveryIndex.get(root.getConnections().getID().getDouble());
+        stack[top++] = rootIndex;
+        discoveryPreOrder[pre++] = rootIndex;
+        while (top > 0) {
+            final int current = stack[top - 1];
+            if (discoveryChildOffset[current] + next[current] < discoveryChildOffset[current + 1]) {
+                final int child = discoveryChildIndex[discoveryChildOffset[current] + next[current]++];
+                discoveryPreOrder[pre++] = child;
+                stack[top++] = child;
+            } else {
+                discoveryPost[current] = post++;
+                top--;
+            }
+        }
+
+        // final layout in postorder
+        nodes = new Component[size];
+        parent = new int[size];
+        childOffset = new int[size + 1];
+        childIndex = new int[Math.max(size - 1, 0)];
+        subtreeSize = new int[size];
+        preOrder = new int[size];
+        preOrderPosition = new int[size];
+        indexById = new DoubleIntHashMap(size);
+
+        final int[] postToDiscovery = new int[size];
+        for (int i = 0; i < size; i++)
+            postToDiscovery[discoveryPost[i]] = i;
+
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            final int d = postToDiscovery[i];
+            nodes[i] = discovered.get(d);
+            indexById.put(nodes[i].getConnections().getID().getDouble(), i);
+
+            childOffset[i] = offset;
+            int count = 1;
+            for (int c = discoveryChildOffset[d]; c < discoveryChildOffset[d + 1]; c++) {
+                final int child = discoveryPost[discoveryChildIndex[c]];
+                childIndex[offset++] = child;
+                parent[child] = i;
+                count += subtreeSize[child]; // children precede the parent in postorder
+            }
+            subtreeSize[i] = count;
+        }
+        childOffset[size] = offset;
+        parent[size - 1] = -1;
+
+        for (int p = 0; p < size; p++) {
+            preOrder[p] = discoveryPost[discoveryPreOrder[p]];
+            preOrderPosition[preOrder[p]] = p;
+        }
+
+    }
+
+    /**
+     * @brief Count the children of each node
+     *
+     * @param[in] root The root of the tree
+     * @param[in] discovered The nodes of the tree
+     * @param[in] discoveryIndex The index of each node by key value
+     * @param[out] parent The index of the parent of each node
+     * @param[out] offset The first position of the children of each node
+     * @exception IllegalArgumentException
+     *                if the parent of a node is not in the tree
+     */
+    private static void countChildren(final Component root, final List<Component> discovered,
+                                      final DoubleIntHashMap discoveryIndex, final int[] parent,
+                                      final int[] offset) {
+
+        for (int i = 0; i < discovered.size(); i++) {
+            final Component node = discovered.get(i);
+            if (node == root) {
+                parent[i] = -1;
+                continue;
+            }
+
+            final Key parentKey = node.getConnections().getPARENT();
+            final int p = (parentKey == null) ? DoubleIntHashMap.MISSING
+                                              : discoveryIndex.get(parentKey.getDouble());
+            if (p == DoubleIntHashMap.MISSING) {
+                String message = node.toString();
+                message += " is not connected with a node of the tree";
+                throw new IllegalArgumentException(message);
+            }
+            parent[i] = p;
+            offset[p + 1]++;
+        }
+
+        for (int i = 0; i < discovered.size(); i++)
+            offset[i + 1] += offset[i];
+
+    }
+
+    /**
+     * @brief Fill the children of each node in the order of
+     *        Connections#getChildren()
+     *
+     * @param[in] discovered The nodes of the tree
+     * @param[in] discoveryIndex The index of each node by key value
+     * @param[in] parent The index of the parent of each node
+     * @param[in] offset The first position of the children of each node
+     * @param[out] children The indices of the children of each node
+     * @exception IllegalArgumentException
+     *                if a node does not list one of the nodes connected with
+     *                it as a child
+     */
+    private static void fillChildren(final List<Component> discovered, final DoubleIntHashMap discoveryIndex,
+                                     final int[] parent, final int[] offset, final int[] children) {
+
+        for (int i = 0; i < discovered.size(); i++) {
+            int position = offset[i];
+            for (Key childKey : discovered.get(i).getConnections().getChildren()) {
+                if (childKey == null) continue;
+
+                final int c = discoveryIndex.get(childKey.getDouble());
+                if (c != DoubleIntHashMap.MISSING && parent[c] == i && position < offset[i + 1])
+                    children[position++] = c;
+            }
+
+            if (position != offset[i + 1]) {
+                String message = discovered.get(i).toString();
+                message += " does not list all the nodes connected with it as children";
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+    }
+
+    /**
+     * @brief The number of nodes of the tree
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @brief The index of the root, i.e. the last node in postorder
+     *
+     * @return The index of the root
+     */
+    public int root() {
+        return nodes.length - 1;
+    }
+
+    /**
+     * @brief The node with the given index
+     *
+     * @param[in] index The index of the node
+     * @return The node
+     */
+    public Component component(final int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @brief The index of the node with the given key
+     *
+     * @param[in] key The key of the node
+     * @return The index of the node, -1 if the key is not in the tree
+     */
+    public int indexOf(final Key key) {
+        return indexOf(key.getDouble());
+    }
+
+    /**
+     * @brief The index of the node with the given key value
+     *
+     * @description This is the lookup without <tt>Key</tt> objects: the
+     *              value is searched in an open-addressing primitive map.
+     *
+     * @param[in] id The value of the key of the node
+     * @return The index of the node, -1 if the value is not in the tree
+     */
+    public int indexOf(final double id) {
+        return indexById.get(id);
+    }
+
+    /**
+     * @brief The index of the parent of a node
+     *
+     * @param[in] index The index of the node
+     * @return The index of the parent, -1 for the root
+     */
+    public int parent(final int index) {
+        return parent[index];
+    }
+
+    /**
+     * @brief The number of children of a node
+     *
+     * @param[in] index The index of the node
+     * @return The number of children
+     */
+    public int childCount(final int index) {
+        return childOffset[index + 1] - childOffset[index];
+    }
+
+    /**
+     * @brief The index of a child of a node
+     *
+     * @param[in] index The index of the node
+     * @param[in] k The position of the child, in the order of
+     *            Connections#getChildren()
+     * @return The index of the child
+     */
+    public int child(final int index, final int k) {
+        return childIndex[childOffset[index] + k];
+    }
+
+    /**
+     * @brief The number of nodes in the subtree of a node
+     *
+     * @param[in] index The index of the node
+     * @return The number of nodes in the subtree, the node included
+     */
+    public int subtreeSize(final int index) {
+        return subtreeSize[index];
+    }
+
+    /**
+     * @brief The first index of the subtree of a node in postorder
+     *
+     * @description The subtree of the node <tt>i</tt> is made of the indices
+     *              from <code>subtreeStart(i)</code> to <tt>i</tt> included.
+     *
+     * @param[in] index The index of the node
+     * @return The first index of the subtree
+     */
+    public int subtreeStart(final int index) {
+        return index - subtreeSize[index] + 1;
+    }
+
+    /**
+     * @brief The node at the given position of the preorder traversal
+     *
+     * @param[in] position The position in preorder
+     * @return The index of the node
+     */
+    public int preOrder(final int position) {
+        return preOrder[position];
+    }
+
+    /**
+     * @brief The position of a node in the preorder traversal
+     *
+     * @description The subtree of the node <tt>i</tt> occupies the positions
+     *              from <code>preOrderPosition(i)</code> to
+     *              <code>preOrderPosition(i) + subtreeSize(i) - 1</code>
+     *              included.
+     *
+     * @param[in] index The index of the node
+     * @return The position in preorder
+     */
+    public int preOrderPosition(final int index) {
+        return preOrderPosition[index];
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class ForkJoinScheduler
+ *
+ * @description Scheduler of the simulation of a tree of <tt>Component</tt>s
+ *              based on the recursive decomposition of the
+ *              <strong>Composite Pattern</strong>: the task of a node forks
+ *              the tasks of its children, joins them and then runs the kernel
+ *              of the node on their results. No notification nor readiness
+ *              flag is involved, and the work-stealing of the
+ *              <code>ForkJoinPool</code> balances sub-basins of very different
+ *              size among the threads.
+ *              <p>
+ *              Subtrees not larger than a threshold are simulated sequentially
+ *              by the task of their main vertex, in postorder, in order to
+ *              avoid the overhead of a task per node on large trees.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class ForkJoinScheduler {
+
+    private final Component root; //!< root of the tree to simulate
+    private final ForkJoinPool pool; //!< pool running the tasks
+    private final int sequentialThreshold; //!< largest subtree simulated by a single task
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree to simulate
+     * @param[in] pool The pool running the tasks
+     * @param[in] sequentialThreshold The size of the largest subtree
+     *            simulated sequentially by a single task; 1 forks a task per
+     *            node
+     * @exception IllegalArgumentException
+     *                if the threshold is not positive
+     */
+    public ForkJoinScheduler(final Component root, final ForkJoinPool pool, final int sequentialThreshold) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        if (pool == null) throw new NullPointerException("Pool cannot be null."); // precondition
+        if (sequentialThreshold <= 0) throw new IllegalArgumentException("Threshold must be positive"); // precondition
+
+        this.root = root;
+        this.pool = pool;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    /**
+     * @brief Run the simulation of the whole tree
+     *
+     * @return The result of the simulation of the root
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     * @exception ExecutionException
+     *                if the simulation of a node throws an exception
+     */
+    public Object run() throws InterruptedException, ExecutionException {
+        final FlatTree tree = root.subtree();
+        return pool.submit(new SubtreeTask(tree, tree.root())).get();
+    }
+
+    /**
+     * @brief class SubtreeTask
+     *
+     * @description Simulation of the subtree of a node.
+     */
+    private final class SubtreeTask extends RecursiveTask<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FlatTree tree; //!< tree to simulate
+        private final int index; //!< main vertex of the subtree
+
+        private SubtreeTask(final FlatTree tree, final int index) {
+            this.tree = tree;
+            this.index = index;
+        }
+
+        /**
+         * @brief Simulate the subtree
+         *
+         * @description River networks are deep, hence the recursion follows
+         *              the heavy path: the task walks down to the child with
+         *              the largest subtree, forking the other children, and
+         *              then climbs back joining them. The nesting of tasks is
+         *              then bounded by the number of light edges of a path,
+         *              which is logarithmic in the size of the tree, instead
+         *              of by its depth.
+         */
+        @Override
+        protected Object compute() {
+
+            final ArrayList<Integer> path = new ArrayList<Integer>();
+            final ArrayList<Integer> heavySlot = new ArrayList<Integer>();
+            final ArrayList<SubtreeTask[]> forked = new ArrayList<SubtreeTask[]>();
+
+            int current = index;
+            while (tree.subtreeSize(current) > sequentialThreshold && tree.childCount(current) > 0) {
+                final int children = tree.childCount(current);
+                int heavy = 0;
+                for (int k = 1; k < children; k++)
+                    if (tree.subtreeSize(tree.child(current, k)) > tree.subtreeSize(tree.child(current, heavy)))
+                        heavy = k;
+
+                final SubtreeTask[] tasks = new SubtreeTask[children];
+                for (int k = 0; k < children; k++) {
+                    if (k == heavy) continue;
+                    tasks[k] = new SubtreeTask(tree, tree.child(current, k));
+                    tasks[k].fork();
+                }
+
+                path.add(current);
+                heavySlot.add(heavy);
+                forked.add(tasks);
+                current = tree.child(current, heavy);
+            }
+
+            Object result = computeSequentially(current);
+            for (int level = path.size() - 1; level >= 0; level--) {
+                final SubtreeTask[] tasks = forked.get(level);
+                final Object[] upstream = new Object[tasks.length];
+                for (int k = 0; k < tasks.length; k++)
+                    upstream[k] = (k == heavySlot.get(level)) ? result : tasks[k].join();
+                result = simulate(path.get(level), upstream);
+            }
+
+            return result;
+
+        }
+
+        /**
+         * @brief Simulate the subtree in postorder within this task
+         *
+         * @description The subtree is a contiguous range of the postorder, so
+         *              the results of the children are always available when
+         *              a node is reached.
+         */
+        private Object computeSequentially(final int vertex) {
+
+            final int start = tree.subtreeStart(vertex);
+            final Object[] results = new Object[vertex - start + 1];
+            for (int i = start; i <= vertex; i++) {
+                final Object[] upstream = new Object[tree.childCount(i)];
+                for (int k = 0; k < upstream.length; k++)
+                    upstream[k] = results[tree.child(i, k) - start];
+                results[i - start] = simulate(i, upstream);
+            }
+            return results[vertex - start];
+
+        }
+
+        private Object simulate(final int node, final Object[] upstream) {
+            final Component component = tree.component(node);
+            return component.computeSimulation(component.getConnections(), Arrays.asList(upstream));
+        }
+
+    }
+
+}
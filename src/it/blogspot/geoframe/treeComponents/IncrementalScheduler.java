@@ -0,0 +1,192 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.Arrays;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class IncrementalScheduler
+ *
+ * @description Scheduler re-running only the nodes whose result is stale.
+ *              When the input of a node changes, e.g. a corrected rain gauge
+ *              of a single <tt>Leaf</tt>, the node is marked as stale together
+ *              with all its ancestors, following Connections#getPARENT() up to
+ *              the root; the next run simulates the stale nodes only, in
+ *              postorder, feeding them the result of their last simulation,
+ *              Component#getSimulationResult(), for the clean children. A
+ *              change of a single node costs the depth of the node instead of
+ *              the size of the tree.
+ *              <p>
+ *              Every node is stale before the first run and after any change
+ *              of the topology of the tree. The scheduler cannot see other
+ *              changes, e.g. a new kernel or new data read by a kernel: the
+ *              affected nodes must be marked by the caller. The results of the
+ *              clean nodes are the ones of their last simulation, whatever
+ *              scheduler ran it.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class IncrementalScheduler {
+
+    private final Component root; //!< root of the tree to simulate
+    @GuardedBy("this") private FlatTree tree; //!< tree of the stale flags
+    @GuardedBy("this") private boolean[] stale; //!< whether each node must be simulated again
+    @GuardedBy("this") private int[] staleNodes; //!< indices of the stale nodes, in marking order
+    @GuardedBy("this") private int staleCount; //!< number of stale nodes
+
+    /**
+     * @brief Constructor
+     *
+     * @description Every node is stale.
+     *
+     * @param[in] root The root of the tree to simulate, whose traverser must
+     *            have been set
+     */
+    public IncrementalScheduler(final Component root) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+
+        this.root = root;
+        markAllStale();
+    }
+
+    /**
+     * @brief Mark a node and all its ancestors as stale
+     *
+     * @description The walk towards the root stops at the first ancestor
+     *              already stale, whose ancestors are stale too.
+     *
+     * @param[in] key The key of the node
+     * @exception IllegalArgumentException
+     *                if no node of the tree has the key
+     */
+    public synchronized void markStale(final Key key) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+
+        refresh();
+        int index = tree.indexOf(key);
+        if (index < 0) throw new IllegalArgumentException("No node with key " + key + " in the tree");
+
+        while (index >= 0 && !stale[index]) {
+            stale[index] = true;
+            staleNodes[staleCount++] = index;
+            index = tree.indexOf(tree.component(index).getConnections().getPARENT());
+        }
+    }
+
+    /**
+     * @brief Mark every node as stale
+     */
+    public synchronized void markAllStale() {
+
+        tree = root.subtree();
+        stale = new boolean[tree.size()];
+        staleNodes = new int[tree.size()];
+        for (int i = 0; i < tree.size(); i++) {
+            stale[i] = true;
+            staleNodes[i] = i;
+        }
+        staleCount = tree.size();
+
+    }
+
+    /**
+     * @brief It returns if a node must be simulated again
+     *
+     * @param[in] key The key of the node
+     * @retval TRUE if the node is stale
+     * @retval FALSE otherwise
+     * @exception IllegalArgumentException
+     *                if no node of the tree has the key
+     */
+    public synchronized boolean isStale(final Key key) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+
+        refresh();
+        final int index = tree.indexOf(key);
+        if (index < 0) throw new IllegalArgumentException("No node with key " + key + " in the tree");
+
+        return stale[index];
+    }
+
+    /**
+     * @brief The number of nodes the next run simulates
+     *
+     * @return The number of stale nodes
+     */
+    public synchronized int getStaleCount() {
+        refresh();
+        return staleCount;
+    }
+
+    /**
+     * @brief Simulate the stale nodes
+     *
+     * @description The stale nodes are simulated in postorder on the calling
+     *              thread; each of them becomes clean as soon as its
+     *              simulation ends, so after a failure the next run resumes
+     *              from the failed node.
+     *
+     * @return The result of the simulation of the root
+     */
+    public synchronized Object run() {
+
+        refresh();
+
+        // in postorder each child precedes its parent
+        Arrays.sort(staleNodes, 0, staleCount);
+        int done = 0;
+        try {
+            for (; done < staleCount; done++) {
+                final int index = staleNodes[done];
+                final Object[] upstream = new Object[tree.childCount(index)];
+                for (int k = 0; k < upstream.length; k++)
+                    upstream[k] = tree.component(tree.child(index, k)).getSimulationResult();
+
+                final Component node = tree.component(index);
+                node.computeSimulation(node.getConnections(), Arrays.asList(upstream));
+                stale[index] = false;
+            }
+        } finally {
+            System.arraycopy(staleNodes, done, staleNodes, 0, staleCount - done);
+            staleCount -= done;
+        }
+
+        return root.getSimulationResult();
+
+    }
+
+    /**
+     * @brief Mark every node as stale if the topology of the tree changed
+     */
+    @GuardedBy("this")
+    private void refresh() {
+        if (root.subtree() != tree) markAllStale();
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class InletProxy
+ *
+ * @description Boundary proxy standing in for a node whose subtree belongs to
+ *              another partition, see <tt>SubtreePartitioner</tt>. Much like a
+ *              <tt>GhostNode</tt> stands in for an intersection, the proxy
+ *              takes the place of the upstream subtree: it is a leaf of the
+ *              partition, always ready, whose simulation waits for the result
+ *              of the remote outlet through the <tt>PartitionTransport</tt>
+ *              and notifies it to the parent.
+ *              <p>
+ *              The proxy shares the connections and the entity of the node it
+ *              stands in for; its kernel is never run.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class InletProxy extends Component {
+
+    private final Component remote; //!< node standing in for
+    private final PartitionTransport transport; //!< channel of the result of the remote node
+    private volatile TreeTraverser<Component> traverser; //!< traverser object
+    private volatile Object received; //!< last result received
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] remote The node whose subtree belongs to another partition
+     * @param[in] transport The channel of the result of the remote node
+     */
+    public InletProxy(final Component remote, final PartitionTransport transport) {
+        if (remote == null) throw new NullPointerException("Remote node cannot be null."); // precondition
+        if (transport == null) throw new NullPointerException("Transport cannot be null."); // precondition
+
+        this.remote = remote;
+        this.transport = transport;
+    }
+
+    /**
+     * @brief The node the proxy stands in for
+     *
+     * @return The remote node
+     */
+    public Component getRemote() {
+        return remote;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @description The proxy has no children: it is always ready.
+     *
+     * @see Component#isReadyForSimulation()
+     */
+    public boolean isReadyForSimulation() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @description The calling thread blocks until the result of the remote
+     *              node is received.
+     *
+     * @see Component#runSimulation(final Component)
+     */
+    public boolean runSimulation(final Component parent) {
+        final Connections connKeys = getConnections();
+        if (!parent.getConnections().getID().equals(connKeys.getPARENT()))
+            throw new IllegalArgumentException("Node not connected with parent");
+
+        final Object result = computeSimulation(connKeys);
+
+        return notifyParent(parent, connKeys.getID(), result);
+    }
+
+    /**
+     * @brief Receive the result of the remote node instead of running the
+     *        kernel
+     *
+     * @exception UncheckedIOException
+     *                if the transport fails
+     * @exception IllegalStateException
+     *                if the calling thread is interrupted while waiting
+     */
+    @Override
+    Object computeSimulation(final Connections connKeys, final List<?> upstream, final int step) {
+
+        try {
+            received = transport.receive(connKeys.getID());
+            return received;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + remote, e);
+        }
+
+    }
+
+    /**
+     * @brief The result received from the remote node
+     *
+     * @return The last result received, <code>null</code> before the first
+     */
+    @Override
+    public Object getSimulationResult() {
+        return received;
+    }
+
+    /**
+     * @brief The connections of the proxy are the ones of the remote node
+     *
+     * @exception UnsupportedOperationException
+     *                always
+     */
+    public void setNewConnections(final Connections connKeys) {
+        throw new UnsupportedOperationException("The connections of a proxy follow the remote node");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getConnections()
+     */
+    public Connections getConnections() {
+        return remote.getConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getStartPoint()
+     */
+    public HydroGeoPoint getStartPoint() {
+        return remote.getStartPoint();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getEndPoint()
+     */
+    public HydroGeoPoint getEndPoint() {
+        return remote.getEndPoint();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getEntity()
+     */
+    public HydroGeoArea getEntity() {
+        return remote.getEntity();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#setTraverser(final BinaryTreeTraverser<Component>)
+     */
+    public void setTraverser(final TreeTraverser<Component> traverser) {
+        if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
+        this.traverser = traverser;
+        invalidateTraversals();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getTraverser()
+     */
+    protected TreeTraverser<Component> getTraverser() {
+        return traverser;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#statesAreNull()
+     */
+    protected boolean statesAreNull() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#validateState()
+     */
+    protected void validateState() {
+        validateConnections(getConnections());
+    }
+
+    protected void allocateSimulationFlags() {
+        // nothing to implement here. The proxy has no simulation flags
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> ";
+        tmp += getConnections().toString();
+
+        return tmp;
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class LatencyHistogram
+ *
+ * @description Lock-free histogram of durations in nanoseconds, with a bucket
+ *              for each power of two: recording is a few atomic increments,
+ *              and the percentiles are exact up to a factor of two, enough to
+ *              tell a straggler from its siblings.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE; //!< bucket 0 holds 0, bucket b holds [2^(b-1), 2^b)
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); //!< samples of each bucket
+    private final LongAdder total = new LongAdder(); //!< sum of the samples
+    private final AtomicLong max = new AtomicLong(); //!< largest sample
+
+    /**
+     * @brief Record a duration
+     *
+     * @param[in] nanos The duration in nanoseconds, negative values count as 0
+     */
+    void record(final long nanos) {
+
+        final long sample = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(sample));
+        total.add(sample);
+
+        for (long current = max.get(); sample > current; current = max.get())
+            if (max.compareAndSet(current, sample)) break;
+
+    }
+
+    /**
+     * @brief Add the samples of another histogram
+     *
+     * @param[in] other The histogram to add
+     */
+    void merge(final LatencyHistogram other) {
+
+        for (int b = 0; b < BUCKETS; b++) {
+            final long count = other.counts.get(b);
+            if (count != 0) counts.addAndGet(b, count);
+        }
+        total.add(other.total.sum());
+
+        final long sample = other.max.get();
+        for (long current = max.get(); sample > current; current = max.get())
+            if (max.compareAndSet(current, sample)) break;
+
+    }
+
+    /**
+     * @brief The number of samples
+     *
+     * @return The number of recorded durations
+     */
+    public long getCount() {
+
+        long count = 0L;
+        for (int b = 0; b < BUCKETS; b++)
+            count += counts.get(b);
+
+        return count;
+
+    }
+
+    /**
+     * @brief The sum of the samples
+     *
+     * @return The total duration in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * @brief The mean of the samples
+     *
+     * @return The mean duration in nanoseconds, 0 without samples
+     */
+    public double getMeanNanos() {
+        final long count = getCount();
+        return (count == 0L) ? 0.0 : (double) getTotalNanos() / count;
+    }
+
+    /**
+     * @brief The largest sample
+     *
+     * @return The largest duration in nanoseconds, 0 without samples
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @brief An upper bound of a percentile
+     *
+     * @param[in] fraction The percentile as a fraction, e.g. 0.99
+     * @return The upper bound of the bucket holding the percentile, never
+     *         above the largest sample; 0 without samples
+     * @exception IllegalArgumentException
+     *                if the fraction is not between 0 and 1
+     */
+    public long getPercentileNanos(final double fraction) {
+        if (!(fraction >= 0.0 && fraction <= 1.0)) // precondition
+            throw new IllegalArgumentException("The fraction must be between 0 and 1");
+
+        final long count = getCount();
+        if (count == 0L) return 0L;
+
+        final long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+        long seen = 0L;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return Math.min(upperBound(b), getMaxNanos());
+        }
+
+        return getMaxNanos();
+
+    }
+
+    /**
+     * @brief The bucket of a sample
+     *
+     * @param[in] nanos The non-negative sample
+     * @return The index of the bucket
+     */
+    private static int bucketOf(final long nanos) {
+        return BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @brief The largest sample of a bucket
+     *
+     * @param[in] bucket The index of the bucket
+     * @return The upper bound of the bucket
+     */
+    private static long upperBound(final int bucket) {
+        return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The summary of the samples
+     */
+    @Override
+    public String toString() {
+
+        String tmp = "count: " + getCount();
+        tmp += ", mean: " + (long) getMeanNanos() + " ns";
+        tmp += ", p50: " + getPercentileNanos(0.5) + " ns";
+        tmp += ", p99: " + getPercentileNanos(0.99) + " ns";
+        tmp += ", max: " + getMaxNanos() + " ns";
+
+        return tmp;
+
+    }
+
+}
@@ -18,16 +18,14 @@
  */
 package it.blogspot.geoframe.treeComponents;
 
-import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.TreeTraverser;
 
 import it.blogspot.geoframe.Connections;
 import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
 import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
 
-import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
@@ -38,11 +36,15 @@ import net.jcip.annotations.ThreadSafe;
  *              <p>
  *              This class is <em>ThreadSafe</em> because:
  *              <ul>
- *              <li>Each state is guarded by the <strong>intrinsic lock</strong>
- *              ;</li>
- *              <li>Each method is <strong>synchronized</strong> in order to
- *              deny stale data if a two threads simultaneously call setter and
- *              getter methods;</li>
+ *              <li>The entity is <strong>final</strong> and the connections
+ *              are <strong>volatile</strong>, so getters never take the
+ *              lock;</li>
+ *              <li>Only the update of the connections and of the traverser is
+ *              guarded by a <code>ReentrantLock</code>, which, unlike the
+ *              intrinsic lock, does not pin virtual threads to their
+ *              carrier;</li>
+ *              <li>The simulation runs without holding the lock, on the
+ *              snapshot of the connections read at its beginning;</li>
  *              <li>The <strong>invariant</strong> is ensured by the method
  *              GhostNode#setNewKey(final Key) and checked by the method
  *              Component#validateInvariant(final Key, final Key, final Key, final Key).</li>
@@ -57,9 +59,10 @@ import net.jcip.annotations.ThreadSafe;
 @ThreadSafe
 public class Leaf extends Component {
 
-    @GuardedBy("this") private Connections connKeys; //!< connections of the node
-    @GuardedBy("this") private HydroGeoArea entity; //!<
-    @GuardedBy("this") private TreeTraverser<Component> traverser; //!< traverser object
+    private final ReentrantLock lock = new ReentrantLock(); //!< lock of the updates
+    private volatile Connections connKeys; //!< connections of the node, written under the lock
+    private final HydroGeoArea entity; //!< entity of the node
+    private volatile TreeTraverser<Component> traverser; //!< traverser object, written under the lock
 
     /**
      * @brief Constructor
@@ -68,7 +71,8 @@ public class Leaf extends Component {
      * @param[in] entity The entity of the node
      */
     public Leaf(final Connections connKeys, final HydroGeoArea entity) {
-        getInstance(connKeys, entity);
+        this.entity = entity;
+        getInstance(connKeys);
     }
 
     /**
@@ -76,7 +80,7 @@ public class Leaf extends Component {
      *
      * @see Component#isReadyForSimulation()
      */
-    public synchronized boolean isReadyForSimulation() {
+    public boolean isReadyForSimulation() {
         return true;
     }
 
@@ -85,21 +89,14 @@ public class Leaf extends Component {
      *
      * @see Component#runSimulation(final Component)
      */
-    public synchronized void runSimulation(final Component parent) {
-        if (!parent.getConnections().getID().equals(connKeys.getPARENT()))
+    public boolean runSimulation(final Component parent) {
+        final Connections connKeys = this.connKeys; // snapshot for the whole simulation
+        if (parent != null && !parent.getConnections().getID().equals(connKeys.getPARENT()))
             throw new IllegalArgumentException("Node not connected with parent");
 
-        try {
-            String message = this.getClass().getSimpleName();
-            message += "       " + connKeys.getID().getDouble();
-            message += " ==> " + Thread.currentThread().getName();
-            message += " Computing..." + " PARENT = ";
-            message += connKeys.getPARENT().getDouble();
-            System.out.println(message);
-            Thread.sleep(5000); // lock is hold
-        } catch (InterruptedException e) {}
-
-        parent.notify(connKeys.getID());
+        final Object result = computeSimulation(connKeys); // no lock is held
+
+        return (parent != null) ? notifyParent(parent, connKeys.getID(), result) : false;
     }
 
     /**
@@ -107,9 +104,15 @@ public class Leaf extends Component {
      *
      * @see Component#setNewConnections(final Connections)
      */
-    public synchronized void setNewConnections(final Connections connKeys) {
-        validateConnections(connKeys); // precondition
-        this.connKeys = connKeys;
+    public void setNewConnections(final Connections connKeys) {
+        acquire(lock);
+        try {
+            validateConnections(connKeys); // precondition
+            this.connKeys = connKeys;
+            invalidateTopology();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -117,7 +120,7 @@ public class Leaf extends Component {
      *
      * @see Component#getConnections()
      */
-    public synchronized Connections getConnections() {
+    public Connections getConnections() {
         return connKeys;
     }
 
@@ -126,7 +129,7 @@ public class Leaf extends Component {
      *
      * @see Component#getStartPoint()
      */
-    public synchronized HydroGeoPoint getStartPoint() {
+    public HydroGeoPoint getStartPoint() {
         return entity.getStartPoint();
     }
 
@@ -135,7 +138,7 @@ public class Leaf extends Component {
      *
      * @see Component#getEndPoint()
      */
-    public synchronized HydroGeoPoint getEndPoint() {
+    public HydroGeoPoint getEndPoint() {
         return entity.getEndPoint();
     }
 
@@ -144,7 +147,7 @@ public class Leaf extends Component {
      *
      * @see Component#getEntity()
      */
-    public synchronized HydroGeoArea getEntity() {
+    public HydroGeoArea getEntity() {
         return entity;
     }
 
@@ -153,29 +156,24 @@ public class Leaf extends Component {
      *
      * @see Component#setTraverser(final BinaryTreeTraverser<Component>)
      */
-    public synchronized void setTraverser(final TreeTraverser<Component> traverser) {
-        if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
-        this.traverser = traverser;
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * @see Component#preOrderTraversal()
-     */
-    public synchronized List<Component> preOrderTraversal() {
-        FluentIterable<Component> iterator = traverser.preOrderTraversal(this);
-        return iterator.toList();
+    public void setTraverser(final TreeTraverser<Component> traverser) {
+        acquire(lock);
+        try {
+            if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
+            this.traverser = traverser;
+            invalidateTraversals();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * {@inheritDoc}
      *
-     * @see Component#postOrderTraversal()
+     * @see Component#getTraverser()
      */
-    public synchronized List<Component> postOrderTraversal() {
-        FluentIterable<Component> iterator = traverser.postOrderTraversal(this);
-        return iterator.toList();
+    protected TreeTraverser<Component> getTraverser() {
+        return traverser;
     }
 
     /**
@@ -198,19 +196,19 @@ public class Leaf extends Component {
      * @brief Allocation of the states of the class
      *
      * @param[in] connKeys The connections of the node
-     * @param[in] entity The entity of node
      */
-    private void getInstance(final Connections connKeys, final HydroGeoArea entity) {
+    private void getInstance(final Connections connKeys) {
 
         if (statesAreNull()) {
-            synchronized(this) {
+            acquire(lock);
+            try {
                 if (statesAreNull()) {
                     this.connKeys = connKeys;
-                    this.entity = entity;
 
                     validateState(); // precondition
                 }
-
+            } finally {
+                lock.unlock();
             }
 
         }
@@ -224,8 +222,7 @@ public class Leaf extends Component {
      */
     protected boolean statesAreNull() {
 
-        if (this.connKeys == null &&
-            this.entity == null) return true;
+        if (this.connKeys == null) return true;
 
         return false;
 
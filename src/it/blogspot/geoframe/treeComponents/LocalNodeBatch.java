@@ -0,0 +1,489 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * @brief class LocalNodeBatch
+ *
+ * @description Batch localization of <tt>LocalNode</tt>s, e.g. gauges or
+ *              dams, on the net of a tree of <tt>Component</tt>s. The
+ *              insertions are accumulated and LocalNodeBatch#apply() rewires
+ *              the tree at once: the reach of each point is found by a single
+ *              <tt>SpatialIndex</tt>, the new connections of every affected
+ *              node are computed before any change, and then each node gets
+ *              Component#setNewConnections(final Connections) once, so its
+ *              simulation flags are reallocated once, and the whole tree gets
+ *              a single new traverser.
+ *              <p>
+ *              A local node is inserted between the node of its reach and the
+ *              parent of that node, so it collects the outflow of the reach.
+ *              The local nodes falling on the same reach are chained from the
+ *              start point to the end point of the reach, in the direction of
+ *              the flow. The reach of the root cannot host local nodes, since
+ *              the root is the node with the key 1.
+ *              </p>
+ *              <p>
+ *              The rewiring must not overlap a simulation of the tree, and the
+ *              new traverser replaces the one of every node, e.g. the one
+ *              installed by a <tt>SubtreePartitioner</tt>. A tree read while
+ *              it is rewired is published through a
+ *              <tt>VersionedTopology</tt> instead, which leaves the current
+ *              nodes untouched.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@NotThreadSafe
+public class LocalNodeBatch {
+
+    private static final int MAX_REPORTED = 20; //!< problems listed by a failed validation
+
+    private final Component root; //!< root of the tree to rewire
+    private final boolean applicable; //!< whether LocalNodeBatch#apply() may rewire the tree in place
+    private final ArrayList<Insertion> insertions = new ArrayList<Insertion>(); //!< pending insertions
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     */
+    public LocalNodeBatch(final Component root) {
+        this(root, true);
+    }
+
+    /**
+     * @brief Constructor of a batch which may be published only
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     * @param[in] applicable Whether LocalNodeBatch#apply() may rewire the tree
+     *            in place, <code>false</code> for a tree owned by a
+     *            <tt>VersionedTopology</tt>
+     */
+    LocalNodeBatch(final Component root, final boolean applicable) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+
+        this.root = root;
+        this.applicable = applicable;
+    }
+
+    /**
+     * @brief Add a local node localized on the reach nearest to its point
+     *
+     * @param[in] id The key of the new local node
+     * @param[in] entity The entity of the local node, whose start point is
+     *            the point to localize
+     * @return This batch
+     */
+    public LocalNodeBatch add(final Key id, final HydroGeoArea entity) {
+        return add(id, entity, null);
+    }
+
+    /**
+     * @brief Add a local node on a given reach
+     *
+     * @param[in] id The key of the new local node
+     * @param[in] entity The entity of the local node, whose start point is
+     *            the point on the reach
+     * @param[in] reach The key of the node of the reach, <code>null</code> to
+     *            localize the point on the nearest reach
+     * @return This batch
+     */
+    public LocalNodeBatch add(final Key id, final HydroGeoArea entity, final Key reach) {
+        if (id == null) throw new NullPointerException("Key cannot be null."); // precondition
+        if (entity == null) throw new NullPointerException("Entity cannot be null."); // precondition
+
+        insertions.add(new Insertion(id, entity, null, reach));
+        return this;
+    }
+
+    /**
+     * @brief Add an existing local node, localized on the reach nearest to
+     *        its point
+     *
+     * @description The connections of the node are replaced, and its
+     *              simulation flags reallocated, only once the batch is
+     *              applied or published: a batch failing its validation
+     *              leaves the node untouched.
+     *
+     * @param[in] node The local node, not yet part of the tree
+     * @return This batch
+     */
+    public LocalNodeBatch add(final LocalNode node) {
+        if (node == null) throw new NullPointerException("Local node cannot be null."); // precondition
+
+        insertions.add(new Insertion(node.getConnections().getID(), node.getEntity(), node, null));
+        return this;
+    }
+
+    /**
+     * @brief The number of insertions added so far
+     *
+     * @return The number of insertions
+     */
+    public int size() {
+        return insertions.size();
+    }
+
+    /**
+     * @brief Insert every local node of the batch in the tree
+     *
+     * @description Every insertion is validated before the tree is changed,
+     *              so an invalid batch leaves the tree untouched. The batch is
+     *              empty afterwards.
+     *
+     * @return The inserted local nodes, in the order of the insertions
+     * @exception IllegalArgumentException
+     *                listing the problems of the batch, e.g. a duplicated
+     *                key, an unknown reach or a point on the reach of the root
+     * @exception IllegalStateException
+     *                if the batch was created by a <tt>VersionedTopology</tt>,
+     *                whose published nodes are never rewired
+     */
+    public List<LocalNode> apply() {
+        if (!applicable) // precondition
+            throw new IllegalStateException("The batch must be published by its VersionedTopology");
+
+        final Rewiring rewiring = plan(root);
+
+        // the only changes of the tree and of the local nodes of the caller
+        for (Map.Entry<Component, Connections> change : rewiring.changes.entrySet())
+            change.getKey().setNewConnections(change.getValue());
+        rewiring.connectInserted();
+        install(rewiring);
+        insertions.clear();
+
+        return rewiring.inserted;
+
+    }
+
+    /**
+     * @brief Forget every insertion added so far
+     */
+    public void clear() {
+        insertions.clear();
+    }
+
+    /**
+     * @brief Compute the rewiring of a tree, without changing it
+     *
+     * @description The new local nodes are created here, since they are
+     *              not part of the tree yet; the local nodes added by the
+     *              caller keep their connections until
+     *              LocalNodeBatch.Rewiring#connectInserted() is called.
+     *
+     * @param[in] root The root of the tree to rewire
+     * @return The new connections of the affected nodes and the local nodes
+     * @exception IllegalArgumentException
+     *                listing the problems of the batch
+     */
+    Rewiring plan(final Component root) {
+
+        final FlatTree tree = root.subtree();
+        final int m = insertions.size();
+        final int[] reaches = new int[m];
+        final double[] positions = new double[m];
+        locate(tree, reaches, positions);
+
+        // insertions grouped by reach, from upstream to downstream
+        final Integer[] order = new Integer[m];
+        for (int j = 0; j < m; j++)
+            order[j] = j;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                if (reaches[a] != reaches[b]) return Integer.compare(reaches[a], reaches[b]);
+                if (positions[a] != positions[b]) return Double.compare(positions[a], positions[b]);
+                return Double.compare(insertions.get(a).id.getDouble(), insertions.get(b).id.getDouble());
+            }
+        });
+
+        final IdentityHashMap<Component, Key> newParents = new IdentityHashMap<Component, Key>();
+        final IdentityHashMap<Component, List<Key>> newChildren = new IdentityHashMap<Component, List<Key>>();
+        final Connections[] connections = new Connections[m];
+        final Key[] below = new Key[m];
+        for (int start = 0, end; start < m; start = end) {
+            final Component reach = tree.component(reaches[order[start]]);
+            final Component parent = tree.component(tree.parent(reaches[order[start]]));
+            for (end = start; end < m && reaches[order[end]] == reaches[order[start]]; end++)
+                below[order[end]] = (end == start) ? reach.getConnections().getID() : insertions.get(order[end - 1]).id;
+
+            for (int k = start; k < end; k++) {
+                final Key up = (k + 1 < end) ? insertions.get(order[k + 1]).id : parent.getConnections().getID();
+                connections[order[k]] = new Connections(insertions.get(order[k]).id, up, below[order[k]]);
+            }
+
+            newParents.put(reach, insertions.get(order[start]).id);
+            List<Key> children = newChildren.get(parent);
+            if (children == null) {
+                children = childrenOf(parent.getConnections());
+                newChildren.put(parent, children);
+            }
+            children.set(children.indexOf(reach.getConnections().getID()), insertions.get(order[end - 1]).id);
+        }
+
+        final ArrayList<LocalNode> inserted = new ArrayList<LocalNode>(m);
+        final IdentityHashMap<Component, Connections> pending = new IdentityHashMap<Component, Connections>();
+        for (int j = 0; j < m; j++) {
+            final Insertion insertion = insertions.get(j);
+            if (insertion.node == null) {
+                inserted.add(new LocalNode(connections[j], insertion.entity));
+            } else {
+                pending.put(insertion.node, connections[j]);
+                inserted.add(insertion.node);
+            }
+        }
+
+        final IdentityHashMap<Component, Connections> changes = new IdentityHashMap<Component, Connections>();
+        final HashSet<Component> affected = new HashSet<Component>(newParents.keySet());
+        affected.addAll(newChildren.keySet());
+        for (Component node : affected) {
+            final Connections connKeys = node.getConnections();
+            final Key parent = newParents.containsKey(node) ? newParents.get(node) : connKeys.getPARENT();
+            final List<Key> children = newChildren.containsKey(node) ? newChildren.get(node)
+                                                                     : childrenOf(connKeys);
+            changes.put(node, new Connections(connKeys.getID(), parent, children.toArray(new Key[children.size()])));
+        }
+
+        return new Rewiring(tree, reaches, order, Collections.unmodifiableList(inserted), changes, pending);
+
+    }
+
+    /**
+     * @brief Find the reach of every insertion and its position on the reach
+     *
+     * @param[in] tree The tree to rewire
+     * @param[out] reaches The index of the node of the reach of each insertion
+     * @param[out] positions The position of each point along its reach, from 0
+     *             at the start point to 1 at the end point
+     * @exception IllegalArgumentException
+     *                listing the problems of the batch
+     */
+    private void locate(final FlatTree tree, final int[] reaches, final double[] positions) {
+
+        final ArrayList<String> problems = new ArrayList<String>();
+        final HashSet<Double> keys = new HashSet<Double>();
+        SpatialIndex index = null;
+        for (int j = 0; j < insertions.size(); j++) {
+            final Insertion insertion = insertions.get(j);
+            final HydroGeoPoint point = (insertion.entity == null) ? null : insertion.entity.getStartPoint();
+
+            if (!keys.add(insertion.id.getDouble()) || tree.indexOf(insertion.id) >= 0)
+                problems.add("duplicated node " + insertion.id);
+            if (point == null) {
+                problems.add("local node " + insertion.id + " has no point");
+                continue;
+            }
+
+            if (insertion.reach != null) {
+                reaches[j] = tree.indexOf(insertion.reach);
+                if (reaches[j] < 0) {
+                    problems.add("reach " + insertion.reach + " of " + insertion.id + " is not in the tree");
+                    continue;
+                }
+            } else {
+                if (index == null) index = SpatialIndex.of(tree.component(tree.root()));
+                final Component nearest = index.nearest(point.getX(), point.getY());
+                if (nearest == null) {
+                    problems.add("no reach to localize " + insertion.id + " on");
+                    continue;
+                }
+                reaches[j] = tree.indexOf(nearest.getConnections().getID());
+            }
+
+            if (reaches[j] == tree.root()) problems.add(insertion.id + " falls on the reach of the root");
+            positions[j] = position(tree.component(reaches[j]), point);
+        }
+
+        if (!problems.isEmpty()) {
+            String message = problems.size() + " problems in the batch of local nodes:";
+            for (int p = 0; p < Math.min(problems.size(), MAX_REPORTED); p++)
+                message += "\n  " + problems.get(p);
+            if (problems.size() > MAX_REPORTED) message += "\n  ...";
+            throw new IllegalArgumentException(message);
+        }
+
+    }
+
+    /**
+     * @brief Set a single traverser on the rewired tree
+     *
+     * @param[in] rewiring The rewiring of the tree
+     */
+    private static void install(final Rewiring rewiring) {
+
+        final FlatTree tree = rewiring.tree;
+        final int[] reaches = rewiring.reaches;
+        final Integer[] order = rewiring.order;
+        final List<LocalNode> inserted = rewiring.inserted;
+
+        final int n = tree.size();
+        final IdentityHashMap<Component, List<Component>> links
+            = new IdentityHashMap<Component, List<Component>>(n + inserted.size());
+        for (int i = 0; i < n; i++) {
+            final ArrayList<Component> children = new ArrayList<Component>(tree.childCount(i));
+            for (int k = 0; k < tree.childCount(i); k++)
+                children.add(tree.component(tree.child(i, k)));
+            links.put(tree.component(i), children);
+        }
+
+        for (int start = 0, end; start < order.length; start = end) {
+            Component below = tree.component(reaches[order[start]]);
+            for (end = start; end < order.length && reaches[order[end]] == reaches[order[start]]; end++) {
+                final Component local = inserted.get(order[end]);
+                links.put(local, Collections.singletonList(below));
+                below = local;
+            }
+
+            final List<Component> siblings = links.get(tree.component(tree.parent(reaches[order[start]])));
+            siblings.set(siblings.indexOf(tree.component(reaches[order[start]])), below);
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component node) {
+                return links.get(node);
+            }
+        };
+        for (Component node : links.keySet())
+            node.setTraverser(traverser);
+
+    }
+
+    /**
+     * @brief The keys of the children of a node
+     *
+     * @param[in] connKeys The connections of the node
+     * @return A modifiable copy of the keys of the children, in order
+     */
+    private static List<Key> childrenOf(final Connections connKeys) {
+
+        final ArrayList<Key> children = new ArrayList<Key>();
+        for (Key childKey : connKeys.getChildren())
+            if (childKey != null) children.add(childKey);
+
+        return children;
+
+    }
+
+    /**
+     * @brief The position of a point along a reach
+     *
+     * @param[in] reach The node of the reach
+     * @param[in] point The point
+     * @return The position of the projection of the point, from 0 at the
+     *         start point to 1 at the end point
+     */
+    private static double position(final Component reach, final HydroGeoPoint point) {
+
+        final HydroGeoArea entity = reach.getEntity();
+        final HydroGeoPoint start = (entity == null) ? null : entity.getStartPoint();
+        final HydroGeoPoint end = (entity == null) ? null : entity.getEndPoint();
+        if (start == null || end == null) return 0.0;
+
+        final double dx = end.getX() - start.getX();
+        final double dy = end.getY() - start.getY();
+        final double length = dx * dx + dy * dy;
+        if (!(length > 0.0)) return 0.0;
+
+        final double t = ((point.getX() - start.getX()) * dx + (point.getY() - start.getY()) * dy) / length;
+        return Math.max(0.0, Math.min(1.0, t));
+
+    }
+
+    /**
+     * @brief class Rewiring
+     *
+     * @description Rewiring of a tree computed by
+     *              LocalNodeBatch#plan(final Component).
+     */
+    static final class Rewiring {
+
+        private final FlatTree tree; //!< tree before the rewiring
+        private final int[] reaches; //!< index of the node of the reach of each insertion
+        private final Integer[] order; //!< insertions grouped by reach, from upstream to downstream
+        final List<LocalNode> inserted; //!< local nodes, in the order of the insertions
+        final IdentityHashMap<Component, Connections> changes; //!< new connections of the affected nodes
+        final IdentityHashMap<Component, Connections> pending; //!< new connections of the local nodes of the caller
+
+        private Rewiring(final FlatTree tree, final int[] reaches, final Integer[] order,
+                         final List<LocalNode> inserted, final IdentityHashMap<Component, Connections> changes,
+                         final IdentityHashMap<Component, Connections> pending) {
+            this.tree = tree;
+            this.reaches = reaches;
+            this.order = order;
+            this.inserted = inserted;
+            this.changes = changes;
+            this.pending = pending;
+        }
+
+        /**
+         * @brief Give the local nodes of the caller their new connections
+         *
+         * @description To be called once the rewiring is validated and
+         *              committed.
+         */
+        void connectInserted() {
+            for (Map.Entry<Component, Connections> planned : pending.entrySet())
+                planned.getKey().setNewConnections(planned.getValue());
+        }
+
+    }
+
+    /**
+     * @brief class Insertion
+     *
+     * @description Local node waiting to be inserted.
+     */
+    private static final class Insertion {
+
+        private final Key id; //!< key of the local node
+        private final HydroGeoArea entity; //!< entity of the local node
+        private final LocalNode node; //!< existing local node, null to create it
+        private final Key reach; //!< key of the node of the reach, null to localize the point
+
+        private Insertion(final Key id, final HydroGeoArea entity, final LocalNode node, final Key reach) {
+            this.id = id;
+            this.entity = entity;
+            this.node = node;
+            this.reach = reach;
+        }
+
+    }
+
+}
@@ -18,10 +18,9 @@
  */
 package it.blogspot.geoframe.treeComponents;
 
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.TreeTraverser;
 
 import it.blogspot.geoframe.Connections;
@@ -29,7 +28,6 @@ import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
 import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
 import it.blogspot.geoframe.key.Key;
 
-import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
@@ -41,11 +39,18 @@ import net.jcip.annotations.ThreadSafe;
  *              <p>
  *              This class is <em>ThreadSafe</em> because:
  *              <ul>
- *              <li>Each state is guarded by the <strong>intrinsic
- *              lock</strong>;</li>
- *              <li>Each method is <strong>synchronized</strong> in order to
- *              deny stale data if a two threads simultaneously call setter and
- *              getter methods;</li>
+ *              <li>The entity is <strong>final</strong> and the connections
+ *              are <strong>volatile</strong>, so getters never take the
+ *              lock;</li>
+ *              <li>Only the update of the connections and of the traverser is
+ *              guarded by a <code>ReentrantLock</code>, which, unlike the
+ *              intrinsic lock, does not pin virtual threads to their
+ *              carrier;</li>
+ *              <li>The simulation runs without holding the lock, on the
+ *              snapshot of the connections read at its beginning;</li>
+ *              <li>The simulation flags are an atomic mask of pending
+ *              children, so <tt>notify</tt> and the readiness check never take
+ *              the lock;</li>
  *              <li>The <strong>invariant</strong> is ensured by the method
  *              GhostNode#setNewKey(final Key) and checked by the method
  *              Component#validateInvariant(final Key, final Key, final Key, final Key).</li>
@@ -60,11 +65,11 @@ import net.jcip.annotations.ThreadSafe;
 @ThreadSafe
 public class Node extends Component {
 
-    @GuardedBy("this") private Connections connKeys; //!< connections of the node
-    @GuardedBy("this") private HydroGeoArea entity; //!<
-    @GuardedBy("this") private TreeTraverser<Component> traverser; //!< traverser object
-    @GuardedBy("this") private final HashMap<Key, Boolean> readyForSim
-        = new HashMap<Key, Boolean>(); //!< <code>HashMap</code> of flags for start sim
+    private final ReentrantLock lock = new ReentrantLock(); //!< lock of the updates
+    private volatile Connections connKeys; //!< connections of the node, written under the lock
+    private final HydroGeoArea entity; //!< entity of the node
+    private volatile TreeTraverser<Component> traverser; //!< traverser object, written under the lock
+    private volatile PendingChildren readyForSim; //!< lock-free flags for start sim
 
     /**
      * @brief Constructor
@@ -73,7 +78,8 @@ public class Node extends Component {
      * @param[in] entity The type of entity of the node
      */
     public Node(final Connections connKeys, final HydroGeoArea entity) {
-        getInstance(connKeys, entity);
+        this.entity = entity;
+        getInstance(connKeys);
     }
 
     /**
@@ -83,10 +89,13 @@ public class Node extends Component {
      *              the computation of their simulation is finished.
      *
      * @param[in] child The key of the child whose computation is finished
+     * @param[in] result The result of the simulation of the child
+     * @retval TRUE if this notification made the node ready for the simulation
+     * @retval FALSE otherwise
      */
     @Override
-    public synchronized void notify(final Key child) {
-        readyForSim.replace(child, true);
+    public boolean notify(final Key child, final Object result) {
+        return readyForSim.arrive(child, result);
     }
 
     /**
@@ -94,8 +103,8 @@ public class Node extends Component {
      *
      * @see Component#isReadyForSimulation()
      */
-    public synchronized boolean isReadyForSimulation() {
-        return (!readyForSim.values().contains(false)) ? true : false;
+    public boolean isReadyForSimulation() {
+        return readyForSim.isComplete();
     }
 
     /**
@@ -103,28 +112,33 @@ public class Node extends Component {
      *
      * @see Component#runSimulation(final Component)
      */
-    public synchronized void runSimulation(final Component parent) {
-        if (!connKeys.getID().getDouble().equals(1.0) &&
-            !parent.getConnections().getID().equals(connKeys.getPARENT()))
+    public boolean runSimulation(final Component parent) {
+        final Connections connKeys = this.connKeys; // snapshot for the whole simulation
+        final boolean root = parent == null || isRoot(connKeys);
+        if (!root && !parent.getConnections().getID().equals(connKeys.getPARENT()))
             throw new IllegalArgumentException("Node not connected with parent");
 
-        try {
-            String message = this.getClass().getSimpleName();
-            message += "       " + connKeys.getID().getDouble();
-            message += " ==> " + Thread.currentThread().getName();
-            message += " Computing..." + " PARENT = ";
-            if (!connKeys.getID().getDouble().equals(1.0)) {
-                message += connKeys.getPARENT().getDouble();
-                System.out.println(message);
-            } else {
-                message += "0";
-                System.out.println(message);
-            }
+        final Object result = computeSimulation(connKeys); // no lock is held
 
-            Thread.sleep(5000); // lock is hold
-        } catch (InterruptedException e) {}
+        return (!root) ? notifyParent(parent, connKeys.getID(), result) : false;
+    }
 
-        if (!connKeys.getID().getDouble().equals(1.0)) parent.notify(connKeys.getID());
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#upstreamResults()
+     */
+    protected List<Object> upstreamResults() {
+        return readyForSim.results();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#childrenWaitNanos()
+     */
+    protected long childrenWaitNanos() {
+        return readyForSim.waitNanos();
     }
 
     /**
@@ -132,10 +146,16 @@ public class Node extends Component {
      *
      * @see Component#setNewConnections(Connections)
      */
-    public synchronized void setNewConnections(final Connections connKeys) {
-        validateConnections(connKeys); // precondition
-        this.connKeys = connKeys;
-        allocateSimulationFlags(); // update of the flags for the simulation
+    public void setNewConnections(final Connections connKeys) {
+        acquire(lock);
+        try {
+            validateConnections(connKeys); // precondition
+            this.connKeys = connKeys;
+            allocateSimulationFlags(); // update of the flags for the simulation
+            invalidateTopology();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -143,7 +163,7 @@ public class Node extends Component {
      *
      * @see Component#getConnections()
      */
-    public synchronized Connections getConnections() {
+    public Connections getConnections() {
         return connKeys;
     }
 
@@ -152,7 +172,7 @@ public class Node extends Component {
      *
      * @see Component#getStartPoint()
      */
-    public synchronized HydroGeoPoint getStartPoint() {
+    public HydroGeoPoint getStartPoint() {
         return entity.getStartPoint();
     }
 
@@ -161,7 +181,7 @@ public class Node extends Component {
      *
      * @see Component#getEndPoint()
      */
-    public synchronized HydroGeoPoint getEndPoint() {
+    public HydroGeoPoint getEndPoint() {
         return entity.getEndPoint();
     }
 
@@ -170,7 +190,7 @@ public class Node extends Component {
      *
      * @see Component#getEntity()
      */
-    public synchronized HydroGeoArea getEntity() {
+    public HydroGeoArea getEntity() {
         return entity;
     }
 
@@ -179,29 +199,24 @@ public class Node extends Component {
      *
      * @see Component#setTraverser(final BinaryTreeTraverser<Component>)
      */
-    public synchronized void setTraverser(final TreeTraverser<Component> traverser) {
-        if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
-        this.traverser = traverser;
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * @see Component#preOrderTraversal()
-     */
-    public synchronized List<Component> preOrderTraversal() {
-        FluentIterable<Component> iterator = traverser.preOrderTraversal(this);
-        return iterator.toList();
+    public void setTraverser(final TreeTraverser<Component> traverser) {
+        acquire(lock);
+        try {
+            if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
+            this.traverser = traverser;
+            invalidateTraversals();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * {@inheritDoc}
      *
-     * @see Component#postOrderTraversal()
+     * @see Component#getTraverser()
      */
-    public synchronized List<Component> postOrderTraversal() {
-        FluentIterable<Component> iterator = traverser.postOrderTraversal(this);
-        return iterator.toList();
+    protected TreeTraverser<Component> getTraverser() {
+        return traverser;
     }
 
     /**
@@ -227,19 +242,20 @@ public class Node extends Component {
      * @description Double-checked locking
      *
      * @param[in] connKeys The connections of the node
-     * @param[in] entity The entity of the node
      */
-    private void getInstance(final Connections connKeys, final HydroGeoArea entity) {
+    private void getInstance(final Connections connKeys) {
 
         if (statesAreNull()) {
-            synchronized(this) {
+            acquire(lock);
+            try {
                 if (statesAreNull()) {
                     this.connKeys = connKeys;
-                    this.entity = entity;
 
                     validateState(); // precondition
                     allocateSimulationFlags();
                 }
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -252,8 +268,7 @@ public class Node extends Component {
      */
     protected boolean statesAreNull() {
 
-        if (this.connKeys == null &&
-            this.entity == null) return true;
+        if (this.connKeys == null) return true;
 
         return false;
 
@@ -270,24 +285,34 @@ public class Node extends Component {
 
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#resetSimulationFlags()
+     */
+    protected void resetSimulationFlags() {
+        readyForSim.reset();
+    }
+
     /**
      * {@inheritDoc}
      *
      * @see Component#allocateSimulationFlags()
      */
     protected void allocateSimulationFlags() {
-        readyForSim.clear();
-
-        if (connKeys.getNumberNonNullChildren() != 0) {
-            for (Key childKey : connKeys.getChildren())
-                readyForSim.putIfAbsent(childKey, false);
-        } else {
-            String message = this.getClass().getSimpleName();
-            message += " has no children. This is not allowed,";
-            message += " only Leaf node can have no children.";
-            throw new NullPointerException(message);
+        acquire(lock);
+        try {
+            if (connKeys.getNumberNonNullChildren() != 0) {
+                readyForSim = new PendingChildren(connKeys);
+            } else {
+                String message = this.getClass().getSimpleName();
+                message += " has no children. This is not allowed,";
+                message += " only Leaf node can have no children.";
+                throw new NullPointerException(message);
+            }
+        } finally {
+            lock.unlock();
         }
-
     }
 
 }
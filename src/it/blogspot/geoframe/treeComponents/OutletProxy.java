@@ -0,0 +1,310 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class OutletProxy
+ *
+ * @description Boundary proxy standing in for the downstream node of a
+ *              partition, which belongs to another partition, see
+ *              <tt>SubtreePartitioner</tt>. The proxy is the root of the
+ *              partition and its only child is the outlet of the partition:
+ *              it becomes ready when the outlet notifies its result, and its
+ *              simulation ships that result through the
+ *              <tt>PartitionTransport</tt> to the <tt>InletProxy</tt> of the
+ *              downstream partition.
+ *              <p>
+ *              The proxy shares the connections and the entity of the node it
+ *              stands in for; its kernel is never run.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class OutletProxy extends Component {
+
+    private final Component remote; //!< node standing in for
+    private final Component outlet; //!< outlet of the partition, the only child
+    private final PartitionTransport transport; //!< channel of the result of the outlet
+    private volatile TreeTraverser<Component> traverser; //!< traverser object
+    private final AtomicBoolean arrived = new AtomicBoolean(); //!< lock-free flag for start sim
+    private volatile Object result; //!< result of the outlet, published by the flag
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] remote The downstream node, which belongs to another
+     *            partition
+     * @param[in] outlet The outlet of the partition
+     * @param[in] transport The channel of the result of the outlet
+     * @exception IllegalArgumentException
+     *                if the outlet is not connected with the downstream node
+     */
+    public OutletProxy(final Component remote, final Component outlet, final PartitionTransport transport) {
+        if (remote == null) throw new NullPointerException("Remote node cannot be null."); // precondition
+        if (outlet == null) throw new NullPointerException("Outlet cannot be null."); // precondition
+        if (transport == null) throw new NullPointerException("Transport cannot be null."); // precondition
+        if (!remote.getConnections().getID().equals(outlet.getConnections().getPARENT())) // precondition
+            throw new IllegalArgumentException("Outlet not connected with the remote node");
+
+        this.remote = remote;
+        this.outlet = outlet;
+        this.transport = transport;
+    }
+
+    /**
+     * @brief The node the proxy stands in for
+     *
+     * @return The remote node
+     */
+    public Component getRemote() {
+        return remote;
+    }
+
+    /**
+     * @brief The outlet of the partition
+     *
+     * @return The only child of the proxy
+     */
+    public Component getOutlet() {
+        return outlet;
+    }
+
+    /**
+     * @brief <tt>notify</tt> method from <strong>Observer Pattern</strong>
+     *
+     * @description Only the notification of the outlet is accepted.
+     *
+     * @param[in] child The key of the child whose computation is finished
+     * @param[in] result The result of the simulation of the child
+     * @retval TRUE if this notification made the proxy ready for the
+     *         simulation
+     * @retval FALSE otherwise
+     */
+    @Override
+    public boolean notify(final Key child, final Object result) {
+
+        if (!child.equals(outlet.getConnections().getID())) return false;
+        if (arrived.get()) return false;
+
+        this.result = result;
+        return arrived.compareAndSet(false, true);
+
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#isReadyForSimulation()
+     */
+    public boolean isReadyForSimulation() {
+        return arrived.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @description The proxy is the root of the partition, so it has no
+     *              parent to notify: the result of the outlet is shipped to the
+     *              downstream partition instead.
+     *
+     * @param[in] parent Must be <code>null</code>
+     * @retval FALSE always
+     * @exception IllegalArgumentException
+     *                if a parent is given
+     */
+    public boolean runSimulation(final Component parent) {
+        if (parent != null) throw new IllegalArgumentException("The proxy is the root of a partition");
+
+        computeSimulation(getConnections());
+
+        return false;
+    }
+
+    /**
+     * @brief Ship the result of the outlet instead of running the kernel
+     *
+     * @exception UncheckedIOException
+     *                if the transport fails
+     */
+    @Override
+    Object computeSimulation(final Connections connKeys, final List<?> upstream, final int step) {
+
+        final Object shipped = upstream.get(0);
+        try {
+            transport.send(outlet.getConnections().getID(), shipped);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return shipped;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#upstreamResults()
+     */
+    protected List<Object> upstreamResults() {
+        return Collections.singletonList(result);
+    }
+
+    /**
+     * @brief The result of the outlet
+     *
+     * @return The result of the outlet, <code>null</code> if it has not
+     *         notified yet
+     */
+    @Override
+    public Object getSimulationResult() {
+        return result;
+    }
+
+    /**
+     * @brief The connections of the proxy are the ones of the remote node
+     *
+     * @exception UnsupportedOperationException
+     *                always
+     */
+    public void setNewConnections(final Connections connKeys) {
+        throw new UnsupportedOperationException("The connections of a proxy follow the remote node");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getConnections()
+     */
+    public Connections getConnections() {
+        return remote.getConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getStartPoint()
+     */
+    public HydroGeoPoint getStartPoint() {
+        return remote.getStartPoint();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getEndPoint()
+     */
+    public HydroGeoPoint getEndPoint() {
+        return remote.getEndPoint();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getEntity()
+     */
+    public HydroGeoArea getEntity() {
+        return remote.getEntity();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#setTraverser(final BinaryTreeTraverser<Component>)
+     */
+    public void setTraverser(final TreeTraverser<Component> traverser) {
+        if (traverser == null) throw new NullPointerException("Traverser cannot be null."); // precondition
+        this.traverser = traverser;
+        invalidateTraversals();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#getTraverser()
+     */
+    protected TreeTraverser<Component> getTraverser() {
+        return traverser;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#statesAreNull()
+     */
+    protected boolean statesAreNull() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see Component#validateState()
+     */
+    protected void validateState() {
+        validateConnections(getConnections());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @description The outlet is marked as not notified yet.
+     *
+     * @see Component#allocateSimulationFlags()
+     */
+    protected void allocateSimulationFlags() {
+        result = null;
+        arrived.set(false);
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> ";
+        tmp += getConnections().toString();
+
+        return tmp;
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class Partition
+ *
+ * @description Subtree of a partitioned tree, see <tt>SubtreePartitioner</tt>.
+ *              The partition is a tree on its own: its root is either the root
+ *              of the whole tree or the <tt>OutletProxy</tt> standing in for
+ *              the downstream node, and the subtrees of the other partitions
+ *              are replaced by <tt>InletProxy</tt>s. It is run by any
+ *              scheduler given Partition#root(), independently of the other
+ *              partitions.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public final class Partition {
+
+    private final int id; //!< index of the partition
+    private final Component root; //!< root of the partition, a proxy unless it is the root of the tree
+    private final Component outlet; //!< most downstream node of the partition
+    private final int downstream; //!< partition owning the downstream node, -1 for the root
+    private final List<InletProxy> inlets; //!< proxies of the upstream partitions
+    private final int size; //!< nodes of the partition, proxies excluded
+    private final double cost; //!< cost of the nodes of the partition
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] id The index of the partition
+     * @param[in] root The root of the partition
+     * @param[in] outlet The most downstream node of the partition
+     * @param[in] downstream The partition owning the downstream node
+     * @param[in] inlets The proxies of the upstream partitions
+     * @param[in] size The number of nodes of the partition
+     * @param[in] cost The cost of the nodes of the partition
+     */
+    Partition(final int id, final Component root, final Component outlet, final int downstream,
+              final List<InletProxy> inlets, final int size, final double cost) {
+        this.id = id;
+        this.root = root;
+        this.outlet = outlet;
+        this.downstream = downstream;
+        this.inlets = inlets;
+        this.size = size;
+        this.cost = cost;
+    }
+
+    /**
+     * @brief The index of the partition
+     *
+     * @return The index, the root of the tree belongs to the last partition
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @brief The root to give to a scheduler
+     *
+     * @return The <tt>OutletProxy</tt> of the partition, or the root of the
+     *         tree for the last partition
+     */
+    public Component getRoot() {
+        return root;
+    }
+
+    /**
+     * @brief The most downstream node of the partition
+     *
+     * @return The outlet, whose result is shipped to the downstream partition
+     */
+    public Component getOutlet() {
+        return outlet;
+    }
+
+    /**
+     * @brief The partition owning the downstream node
+     *
+     * @return The index of the downstream partition, -1 for the last
+     *         partition
+     */
+    public int getDownstream() {
+        return downstream;
+    }
+
+    /**
+     * @brief The proxies of the upstream partitions
+     *
+     * @return The read-only list of the inlets
+     */
+    public List<InletProxy> getInlets() {
+        return inlets;
+    }
+
+    /**
+     * @brief The number of nodes of the partition
+     *
+     * @return The number of nodes, proxies excluded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @brief The cost of the partition
+     *
+     * @return The sum of the cost of its nodes
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> id: " + id;
+        tmp += ", outlet: " + outlet;
+        tmp += ", downstream: " + downstream;
+        tmp += ", inlets: " + inlets.size();
+        tmp += ", size: " + size;
+        tmp += ", cost: " + cost;
+
+        return tmp;
+
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief interface PartitionTransport
+ *
+ * @description Channel carrying the result of the outlet of a partition to
+ *              the partition owning its downstream node, see
+ *              <tt>SubtreePartitioner</tt>. Each outlet sends a single result
+ *              per run, which is received once by the <tt>InletProxy</tt>
+ *              standing in for it.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public interface PartitionTransport {
+
+    /**
+     * @brief Ship the result of the outlet of a partition
+     *
+     * @param[in] outlet The key of the outlet
+     * @param[in] result The result of the simulation of the outlet
+     * @exception IOException
+     *                if the result cannot be shipped
+     */
+    void send(final Key outlet, final Object result) throws IOException;
+
+    /**
+     * @brief Wait for the result of the outlet of another partition
+     *
+     * @param[in] outlet The key of the outlet
+     * @return The result of the simulation of the outlet
+     * @exception IOException
+     *                if the result cannot be received
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     */
+    Object receive(final Key outlet) throws IOException, InterruptedException;
+
+}
@@ -0,0 +1,99 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.TreeTraverser;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class Partitioning
+ *
+ * @description Partitions installed on a tree by a
+ *              <tt>SubtreePartitioner</tt>, together with the traversers the
+ *              nodes had before. The partitioning replaces the traverser of
+ *              every node of the tree; Partitioning#restore() sets the
+ *              previous ones again, so that the traversals of the root cover
+ *              the whole tree once the partitions are no longer run.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class Partitioning {
+
+    private final List<Partition> partitions; //!< partitions, in postorder of their outlets
+    private final Map<Component, TreeTraverser<Component>> previous; //!< traverser of each node before the partitioning
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] partitions The read-only list of the partitions
+     * @param[in] previous The traverser of each node of the tree before the
+     *            partitioning, not modified afterwards
+     */
+    Partitioning(final List<Partition> partitions, final Map<Component, TreeTraverser<Component>> previous) {
+        this.partitions = partitions;
+        this.previous = previous;
+    }
+
+    /**
+     * @brief The partitions
+     *
+     * @return The read-only list of the partitions, in postorder of their
+     *         outlets: the last one holds the root of the tree
+     */
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @brief Set again the traversers the nodes had before the partitioning
+     *
+     * @description The proxies of the partitions are left out of the tree;
+     *              the restoring must not overlap a simulation of the
+     *              partitions.
+     */
+    public synchronized void restore() {
+        for (Map.Entry<Component, TreeTraverser<Component>> node : previous.entrySet())
+            node.getKey().setTraverser(node.getValue());
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> partitions: " + partitions.size();
+        tmp += ", nodes: " + previous.size();
+
+        return tmp;
+
+    }
+
+}
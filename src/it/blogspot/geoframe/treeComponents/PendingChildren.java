@@ -0,0 +1,243 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class PendingChildren
+ *
+ * @description Lock-free simulation flags of a node with children. Each child
+ *              owns a bit of an atomic mask, which is cleared when the child
+ *              notifies the end of its simulation. The notification clearing
+ *              the last bit is the only one reporting the node as ready, so
+ *              exactly one caller is in charge of starting the node.
+ *              <p>
+ *              A notification of a child already notified, or of a key that
+ *              is not a child, leaves the mask unchanged.
+ *              </p>
+ *              <p>
+ *              The result of each child is stored before its bit is cleared,
+ *              so the thread observing the empty mask sees every result. The
+ *              slot of the result is claimed with a compare-and-set, so two
+ *              concurrent notifications of the same child cannot both write
+ *              it: the one losing the slot leaves the mask unchanged. The
+ *              flags are reset between two runs, never while children are
+ *              notifying.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+final class PendingChildren {
+
+    private static final int MAX_CHILDREN = Integer.SIZE - 1; //!< children representable by the mask
+    private static final Object NULL_RESULT = new Object(); //!< stored in place of a null result, claiming the slot
+
+    private final double[] children; //!< key values of the children, the index is the bit in the mask
+    private final int allPending; //!< mask with the bit of each child set
+    private final AtomicInteger pending; //!< bits of the children not notified yet
+    private final AtomicReferenceArray<Object> results; //!< result of each child, null while unclaimed
+    private final List<Object> resultsView; //!< read-only view of the results
+    private volatile long armedNanos; //!< reset of the flags, only while metrics are installed
+    private volatile long completedNanos; //!< notification of the last child, only while metrics are installed
+
+    /**
+     * @brief Constructor
+     *
+     * @description Every child is pending after the construction.
+     *
+     * @param[in] connKeys The connections of the node
+     * @exception IllegalArgumentException
+     *                if the node has more children than the mask can hold
+     */
+    PendingChildren(final Connections connKeys) {
+
+        final ArrayList<Key> keys = new ArrayList<Key>();
+        for (Key childKey : connKeys.getChildren())
+            if (childKey != null) keys.add(childKey);
+
+        if (keys.size() > MAX_CHILDREN) {
+            String message = "A node cannot have more than " + MAX_CHILDREN;
+            message += " children";
+            throw new IllegalArgumentException(message);
+        }
+
+        children = new double[keys.size()];
+        for (int i = 0; i < children.length; i++)
+            children[i] = keys.get(i).getDouble();
+        allPending = (1 << children.length) - 1;
+        pending = new AtomicInteger(allPending);
+        results = new AtomicReferenceArray<Object>(children.length);
+        resultsView = new ResultsView();
+        arm();
+
+    }
+
+    /**
+     * @brief Record the end of the simulation of a child
+     *
+     * @param[in] child The key of the child whose computation is finished
+     * @param[in] result The result of the simulation of the child
+     * @retval TRUE if this notification made the node ready
+     * @retval FALSE otherwise
+     */
+    boolean arrive(final Key child, final Object result) {
+        return arrive(child.getDouble(), result);
+    }
+
+    /**
+     * @brief Record the end of the simulation of a child
+     *
+     * @description The child is matched by the primitive value of its key,
+     *              without boxing nor hashing.
+     *
+     * @param[in] child The value of the key of the child
+     * @param[in] result The result of the simulation of the child
+     * @retval TRUE if this notification made the node ready
+     * @retval FALSE otherwise
+     */
+    boolean arrive(final double child, final Object result) {
+
+        final int index = indexOf(child);
+        if (index < 0) return false;
+
+        final int bit = 1 << index;
+        if ((pending.get() & bit) == 0) return false;
+        if (!results.compareAndSet(index, null, (result == null) ? NULL_RESULT : result)) return false;
+
+        for (;;) {
+            final int current = pending.get();
+            if ((current & bit) == 0) return false;
+
+            final int next = current & ~bit;
+            if (pending.compareAndSet(current, next)) {
+                if (next == 0 && armedNanos != 0L) completedNanos = System.nanoTime();
+                return next == 0;
+            }
+        }
+
+    }
+
+    /**
+     * @brief It returns if every child has notified the end of its simulation
+     *
+     * @retval TRUE if no child is pending
+     * @retval FALSE otherwise
+     */
+    boolean isComplete() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * @brief The results of the children
+     *
+     * @return The read-only results, in the order of the children
+     */
+    List<Object> results() {
+        return resultsView;
+    }
+
+    /**
+     * @brief Mark every child as pending again and forget their results
+     *
+     * @description Not to be called while children are notifying.
+     */
+    void reset() {
+        for (int i = 0; i < children.length; i++)
+            results.set(i, null);
+        arm();
+        pending.set(allPending);
+    }
+
+    /**
+     * @brief The time spent waiting for the children
+     *
+     * @return The time from the allocation or the last reset until the last
+     *         child notified, in nanoseconds; negative if the metrics were not
+     *         installed or a child is still pending
+     */
+    long waitNanos() {
+        final long armed = armedNanos;
+        final long completed = completedNanos;
+        return (armed == 0L || completed == 0L) ? -1L : completed - armed;
+    }
+
+    /**
+     * @brief Start measuring the wait for the children
+     *
+     * @description Nothing is measured unless <tt>SimulationMetrics</tt> are
+     *              installed.
+     */
+    private void arm() {
+        completedNanos = 0L;
+        armedNanos = (SimulationMetrics.installed() == null) ? 0L : System.nanoTime();
+    }
+
+    /**
+     * @brief Find the index of a child, which is also its bit in the mask
+     *
+     * @param[in] child The value of the key of the child
+     * @return The index of the child, -1 if the key is not a child
+     */
+    private int indexOf(final double child) {
+
+        final long bits = Double.doubleToLongBits(child);
+        for (int i = 0; i < children.length; i++)
+            if (Double.doubleToLongBits(children[i]) == bits) return i;
+
+        return -1;
+
+    }
+
+    /**
+     * @brief class ResultsView
+     *
+     * @description Read-only view of the results, giving back the
+     *              <code>null</code> results.
+     */
+    private final class ResultsView extends AbstractList<Object> implements RandomAccess {
+
+        @Override
+        public Object get(final int index) {
+            final Object result = results.get(index);
+            return (result == NULL_RESULT) ? null : result;
+        }
+
+        @Override
+        public int size() {
+            return children.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjIntConsumer;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class PipelinedScheduler
+ *
+ * @description Scheduler of a simulation over many time steps in which the
+ *              steps of different nodes overlap. Every edge of the tree owns a
+ *              bounded buffer carrying the results of the child, step after
+ *              step, to the parent: a node runs its next step as soon as each
+ *              child buffer holds a result for that step and its own buffer
+ *              towards the parent has room. Upstream <tt>Leaf</tt>s can then
+ *              compute the step <tt>t + 1</tt> while the downstream
+ *              <tt>Node</tt>s are still processing the step <tt>t</tt>, with no
+ *              barrier between two steps.
+ *              <p>
+ *              The kernel of each node is invoked once per step, in the order
+ *              of the steps and never concurrently for the same node, so a
+ *              kernel may keep the state of its node between two steps. The
+ *              list of upstream results is reused by the following step and
+ *              must not be retained by the kernel.
+ *              </p>
+ *              <p>
+ *              A kernel shared among nodes runs different steps at the same
+ *              time, one per node, so it cannot track the current step by
+ *              itself: a <tt>StepKernel</tt> receives the index of the step
+ *              with each invocation.
+ *              </p>
+ *              <p>
+ *              The tasks never block: a node which cannot proceed is simply
+ *              not submitted, and it is submitted again by the neighbour which
+ *              unblocks it. Any executor, even with a single thread, can run
+ *              the whole pipeline.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class PipelinedScheduler {
+
+    private static final Object NULL_RESULT = new Object(); //!< stands for null in the buffers
+
+    private final Component root; //!< root of the tree to simulate
+    private final Executor executor; //!< executor running the steps
+    private final int bufferCapacity; //!< steps buffered on each edge
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree to simulate
+     * @param[in] executor The executor running the steps of each node
+     * @param[in] bufferCapacity The number of results each edge can buffer,
+     *            i.e. how many steps a child can run ahead of its parent
+     * @exception IllegalArgumentException
+     *                if the capacity is not positive
+     */
+    public PipelinedScheduler(final Component root, final Executor executor, final int bufferCapacity) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        if (executor == null) throw new NullPointerException("Executor cannot be null."); // precondition
+        if (bufferCapacity <= 0) throw new IllegalArgumentException("Buffer capacity must be positive"); // precondition
+
+        this.root = root;
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * @brief Run the simulation of the whole tree over a number of steps
+     *
+     * @param[in] steps The number of time steps to simulate
+     * @param[in] outlet Receives the result of the root at each step, in the
+     *            order of the steps; it may be <code>null</code>
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     * @exception ExecutionException
+     *                if the simulation of a node throws an exception
+     */
+    public synchronized void run(final int steps, final ObjIntConsumer<Object> outlet)
+        throws InterruptedException, ExecutionException {
+
+        if (steps < 0) throw new IllegalArgumentException("Steps cannot be negative"); // precondition
+        if (steps == 0) return;
+
+        final Execution execution = new Execution(root.subtree(), steps, outlet);
+        execution.start();
+        execution.await();
+
+    }
+
+    /**
+     * @brief class Execution
+     *
+     * @description State of a single run. The counters of the steps and the
+     *              upstream arrays of a node are only touched by the task of
+     *              that node, which is never submitted twice at the same time
+     *              thanks to the <code>scheduled</code> flags.
+     */
+    private final class Execution {
+
+        private final FlatTree tree; //!< tree to simulate
+        private final int steps; //!< number of steps of the run
+        private final ObjIntConsumer<Object> outlet; //!< consumer of the results of the root
+        private final ArrayBlockingQueue<Object>[] buffers; //!< buffer of the edge towards the parent
+        private final int[] nextStep; //!< next step of each node
+        private final Object[][] upstream; //!< upstream results of each node
+        private final List<Object>[] upstreamView; //!< read-only views of the upstream results
+        private final AtomicIntegerArray scheduled; //!< 1 if the task of the node is submitted
+        private final CountDownLatch done = new CountDownLatch(1); //!< released by the root or by a failure
+        private final AtomicReference<Throwable> failure
+            = new AtomicReference<Throwable>(); //!< first failure of the run
+
+        /**
+         * @brief Constructor
+         *
+         * @param[in] tree The tree to simulate
+         * @param[in] steps The number of steps
+         * @param[in] outlet The consumer of the results of the root
+         */
+        @SuppressWarnings("unchecked")
+        private Execution(final FlatTree tree, final int steps, final ObjIntConsumer<Object> outlet) {
+
+            this.tree = tree;
+            this.steps = steps;
+            this.outlet = outlet;
+
+            final int size = tree.size();
+            buffers = (ArrayBlockingQueue<Object>[]) new ArrayBlockingQueue<?>[size];
+            nextStep = new int[size];
+            upstream = new Object[size][];
+            upstreamView = (List<Object>[]) new List<?>[size];
+            scheduled = new AtomicIntegerArray(size);
+
+            for (int i = 0; i < size; i++) {
+                if (i != tree.root()) buffers[i] = new ArrayBlockingQueue<Object>(bufferCapacity);
+                upstream[i] = new Object[tree.childCount(i)];
+                upstreamView[i] = Collections.unmodifiableList(Arrays.asList(upstream[i]));
+            }
+
+        }
+
+        /**
+         * @brief Submit every node able to run its first step
+         */
+        private void start() {
+            for (int i = 0; i < tree.size(); i++)
+                trySchedule(i);
+        }
+
+        /**
+         * @brief Submit the task of a node if it can run its next step
+         *
+         * @description The readiness is checked again after clearing the flag,
+         *              so a neighbour unblocking the node between the check
+         *              and the clearing never goes unnoticed. A task rejected
+         *              by the executor aborts the run like a failed step.
+         *
+         * @param[in] index The index of the node
+         */
+        private void trySchedule(final int index) {
+
+            while (scheduled.compareAndSet(index, 0, 1)) {
+                if (canRun(index)) {
+                    tree.component(index).markReady();
+                    try {
+                        executor.execute(new StepTask(index));
+                    } catch (RuntimeException e) {
+                        scheduled.set(index, 0);
+                        abort(e);
+                    }
+                    return;
+                }
+                scheduled.set(index, 0);
+                if (!canRun(index)) return;
+            }
+
+        }
+
+        /**
+         * @brief It returns if a node can run its next step
+         *
+         * @param[in] index The index of the node
+         * @retval TRUE if every child has buffered the step and the buffer
+         *         towards the parent has room
+         * @retval FALSE otherwise
+         */
+        private boolean canRun(final int index) {
+
+            if (failure.get() != null || nextStep[index] >= steps) return false;
+            if (index != tree.root() && buffers[index].remainingCapacity() == 0) return false;
+
+            for (int k = 0; k < tree.childCount(index); k++)
+                if (buffers[tree.child(index, k)].peek() == null) return false;
+
+            return true;
+
+        }
+
+        /**
+         * @brief Run the next step of a node and wake up its neighbours
+         *
+         * @param[in] index The index of the node
+         */
+        private void step(final int index) {
+
+            final Component node = tree.component(index);
+            final Object[] inputs = upstream[index];
+            for (int k = 0; k < inputs.length; k++)
+                inputs[k] = unwrap(buffers[tree.child(index, k)].poll());
+
+            final int step = nextStep[index];
+            final Object result = node.computeSimulation(node.getConnections(), upstreamView[index], step);
+            Arrays.fill(inputs, null);
+            nextStep[index] = step + 1;
+
+            if (index == tree.root()) {
+                if (outlet != null) outlet.accept(result, step);
+                if (step + 1 == steps) done.countDown();
+            } else {
+                buffers[index].add((result == null) ? NULL_RESULT : result);
+            }
+
+        }
+
+        /**
+         * @brief Stop the run at its first failure
+         *
+         * @param[in] e The failure, of a step or of the executor
+         */
+        private void abort(final Throwable e) {
+            failure.compareAndSet(null, e);
+            done.countDown();
+        }
+
+        /**
+         * @brief Wait for the end of the run
+         *
+         * @exception InterruptedException
+         *                if the calling thread is interrupted while waiting
+         * @exception ExecutionException
+         *                if the simulation of a node throws an exception
+         */
+        private void await() throws InterruptedException, ExecutionException {
+            done.await();
+            if (failure.get() != null) throw new ExecutionException(failure.get());
+        }
+
+        /**
+         * @brief class StepTask
+         *
+         * @description Runs the next step of a node, then releases the flag of
+         *              the node and tries to submit the parent, which may have
+         *              received its last input, the children, which may have
+         *              found room in their buffer, and the node itself.
+         */
+        private final class StepTask implements Runnable {
+
+            private final int index; //!< index of the node
+
+            private StepTask(final int index) {
+                this.index = index;
+            }
+
+            public void run() {
+                try {
+                    step(index);
+                } catch (Throwable e) {
+                    abort(e);
+                    return;
+                } finally {
+                    scheduled.set(index, 0);
+                }
+
+                if (index != tree.root()) trySchedule(tree.parent(index));
+                for (int k = 0; k < tree.childCount(index); k++)
+                    trySchedule(tree.child(index, k));
+                trySchedule(index);
+            }
+
+        }
+
+    }
+
+    /**
+     * @brief Restore the <code>null</code> results, which the buffers cannot
+     *        hold
+     */
+    private static Object unwrap(final Object buffered) {
+        return (buffered == NULL_RESULT) ? null : buffered;
+    }
+
+}
@@ -0,0 +1,841 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class ResultCache
+ *
+ * @description Store of the results of the nodes, keyed by the <tt>Key</tt>
+ *              of the node and by a time window, e.g. the index of the hour of
+ *              a long simulation. The memory is bounded by the total weight of
+ *              the results, estimated by a function of the caller or counted
+ *              as one per result; when the bound is exceeded the least
+ *              recently used, or the least frequently used, results are
+ *              evicted. An evicted result which is <code>Serializable</code>
+ *              can be spilled to a local directory, from which it is read back
+ *              at the next request. A result is removed from memory only once
+ *              it is on disk: when the spill fails the result stays, the
+ *              failure is counted and the bound may be exceeded until a later
+ *              eviction succeeds.
+ *              <p>
+ *              The cache serves any scheduler through
+ *              ResultCache#caching(final SimulationKernel, final LongSupplier),
+ *              which wraps a kernel so that a result already stored for the
+ *              current window is reused instead of computed again, as long as
+ *              it was computed from the same upstream results. Each stored
+ *              result gets a version, and a result remembers the versions of
+ *              the upstream results it was computed from instead of the
+ *              results themselves: the check needs neither the equality of
+ *              the results nor more memory than one <code>long</code> per
+ *              upstream node. <code>null</code> results are never stored.
+ *              </p>
+ *              <p>
+ *              A single <code>ReentrantLock</code> guards the cache, so
+ *              virtual threads waiting for it are not pinned. The spilled
+ *              results are written and read outside of it: a result being
+ *              written is still in memory, counted in the weight and served
+ *              from there, while a result being read is a miss for the other
+ *              threads.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class ResultCache {
+
+    /**
+     * @brief Order of eviction of the results
+     */
+    public enum Policy {
+        LRU, //!< least recently used first
+        LFU //!< least frequently used first, the least recently used among equals
+    }
+
+    private static final ToLongFunction<Object> UNIT_WEIGHT = new ToLongFunction<Object>() {
+        public long applyAsLong(final Object result) {
+            return 1L;
+        }
+    }; //!< every result weighs 1
+
+    private static final long NO_RESULT = 0L; //!< version of a null upstream result
+    private static final long UNKNOWN = -1L; //!< version of an upstream result which is not stored
+
+    private final long maxWeight; //!< bound of the total weight in memory
+    private final ToLongFunction<Object> weigher; //!< weight of each result
+    private final Path spillDirectory; //!< directory of the spilled results, null to drop them
+    private final ReentrantLock lock = new ReentrantLock(); //!< lock of the cache
+    @GuardedBy("lock") private final HashMap<WindowKey, Entry> entries
+        = new HashMap<WindowKey, Entry>(); //!< results in memory
+    @GuardedBy("lock") private final TreeSet<Entry> evictionOrder; //!< results in memory, next to evict first
+    @GuardedBy("lock") private final HashMap<WindowKey, Entry> spilling
+        = new HashMap<WindowKey, Entry>(); //!< results being written to disk
+    @GuardedBy("lock") private final HashMap<WindowKey, Long> spilled
+        = new HashMap<WindowKey, Long>(); //!< versions of the results on disk
+    @GuardedBy("lock") private final HashMap<WindowKey, Long> loading
+        = new HashMap<WindowKey, Long>(); //!< versions of the results being read from disk
+    @GuardedBy("lock") private long weight; //!< total weight in memory, the results being written included
+    @GuardedBy("lock") private long spillingWeight; //!< weight of the results being written
+    @GuardedBy("lock") private long tick; //!< clock of the accesses
+    @GuardedBy("lock") private long version = NO_RESULT; //!< last version given to a result
+
+    private final LongAdder hits = new LongAdder(); //!< requests served from memory
+    private final LongAdder diskHits = new LongAdder(); //!< requests served from disk
+    private final LongAdder misses = new LongAdder(); //!< requests not served
+    private final LongAdder evictions = new LongAdder(); //!< results evicted from memory
+    private final LongAdder spills = new LongAdder(); //!< results written to disk
+    private final LongAdder spillFailures = new LongAdder(); //!< results which could not be written to disk
+
+    /**
+     * @brief Constructor of a cache bounded by the number of results
+     *
+     * @param[in] maxResults The maximum number of results in memory
+     * @param[in] policy The order of eviction
+     */
+    public ResultCache(final long maxResults, final Policy policy) {
+        this(maxResults, policy, UNIT_WEIGHT, null);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] maxWeight The bound of the total weight of the results in
+     *            memory
+     * @param[in] policy The order of eviction
+     * @param[in] weigher The weight of each result, e.g. its size in bytes
+     * @param[in] spillDirectory The existing directory of the evicted results,
+     *            <code>null</code> to drop them
+     * @exception IllegalArgumentException
+     *                if the bound is not positive or the spill directory does
+     *                not exist
+     */
+    public ResultCache(final long maxWeight, final Policy policy, final ToLongFunction<Object> weigher,
+                       final Path spillDirectory) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("The bound must be positive"); // precondition
+        if (policy == null) throw new NullPointerException("Policy cannot be null."); // precondition
+        if (weigher == null) throw new NullPointerException("Weigher cannot be null."); // precondition
+        if (spillDirectory != null && !Files.isDirectory(spillDirectory)) // precondition
+            throw new IllegalArgumentException(spillDirectory + " is not a directory");
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.spillDirectory = spillDirectory;
+        evictionOrder = new TreeSet<Entry>((policy == Policy.LRU) ? BY_RECENCY : BY_FREQUENCY);
+    }
+
+    /**
+     * @brief The result of a node in a time window
+     *
+     * @param[in] key The key of the node
+     * @param[in] window The time window
+     * @return The result, <code>null</code> if it is not stored
+     * @exception UncheckedIOException
+     *                if a spilled result cannot be read
+     */
+    public Object get(final Key key, final long window) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+
+        return lookup(new WindowKey(key.getDouble(), window), null);
+    }
+
+    /**
+     * @brief Store the result of a node in a time window
+     *
+     * @description A result heavier than the whole bound is not stored. The
+     *              results computed from the previous one are not reused
+     *              anymore.
+     *
+     * @param[in] key The key of the node
+     * @param[in] window The time window
+     * @param[in] result The result, <code>null</code> is ignored
+     */
+    public void put(final Key key, final long window, final Object result) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+        if (result == null) return;
+
+        store(new WindowKey(key.getDouble(), window), result, null);
+    }
+
+    /**
+     * @brief Forget the result of a node in a time window
+     *
+     * @param[in] key The key of the node
+     * @param[in] window The time window
+     * @exception UncheckedIOException
+     *                if the spilled result cannot be deleted
+     */
+    public void invalidate(final Key key, final long window) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+
+        final Path file;
+        lock.lock();
+        try {
+            file = discard(new WindowKey(key.getDouble(), window));
+        } finally {
+            lock.unlock();
+        }
+        delete(file);
+    }
+
+    /**
+     * @brief Forget every result, the spilled ones included
+     *
+     * @exception UncheckedIOException
+     *                if a spilled result cannot be deleted
+     */
+    public void clear() {
+        final List<Path> files = new ArrayList<Path>();
+        lock.lock();
+        try {
+            for (Map.Entry<WindowKey, Long> file : spilled.entrySet())
+                files.add(fileOf(file.getKey(), file.getValue()));
+            spilled.clear();
+            entries.clear();
+            evictionOrder.clear();
+            spilling.clear();
+            loading.clear();
+            weight = 0L;
+            spillingWeight = 0L;
+        } finally {
+            lock.unlock();
+        }
+        for (Path file : files)
+            delete(file);
+    }
+
+    /**
+     * @brief Wrap a kernel so that it reuses the results of the cache
+     *
+     * @description The wrapped kernel returns the result stored for the node
+     *              in the current window, if any and if it was computed from
+     *              the versions of the results of the upstream nodes which are
+     *              stored now; otherwise it runs the kernel and stores its
+     *              result together with those versions. A node whose upstream
+     *              nodes were computed again, e.g. by an
+     *              <tt>IncrementalScheduler</tt>, is thus computed again as
+     *              well, even if the new upstream results are equal to the old
+     *              ones; so is a node with an upstream result which is not
+     *              stored, e.g. because it is heavier than the bound. The
+     *              caller is in charge of invalidating the results whose
+     *              entity changes.
+     *
+     * @param[in] kernel The kernel computing the results
+     * @param[in] window The current time window of the simulation
+     * @return The caching kernel
+     */
+    public <R> SimulationKernel<R> caching(final SimulationKernel<R> kernel, final LongSupplier window) {
+        if (kernel == null) throw new NullPointerException("Kernel cannot be null."); // precondition
+        if (window == null) throw new NullPointerException("Window cannot be null."); // precondition
+
+        return new SimulationKernel<R>() {
+            @SuppressWarnings("unchecked")
+            public R simulate(final Connections connKeys, final HydroGeoArea entity, final List<R> upstream) {
+                final long current = window.getAsLong();
+                final WindowKey id = new WindowKey(connKeys.getID().getDouble(), current);
+                final long[] fingerprint = fingerprint(connKeys.getChildren(), current, upstream);
+                final Object cached = lookup(id, fingerprint);
+                if (cached != null) return (R) cached;
+
+                final R result = kernel.simulate(connKeys, entity, upstream);
+                if (result != null) store(id, result, fingerprint);
+                return result;
+            }
+        };
+    }
+
+    /**
+     * @brief The number of requests served from memory
+     *
+     * @return The number of hits in memory
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @brief The number of requests served from the spill directory
+     *
+     * @return The number of hits on disk
+     */
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+
+    /**
+     * @brief The number of requests not served
+     *
+     * @return The number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @brief The fraction of the requests served, from memory or disk
+     *
+     * @return The hit rate, 0 without requests
+     */
+    public double getHitRate() {
+        final long served = hits.sum() + diskHits.sum();
+        final long requests = served + misses.sum();
+        return (requests == 0L) ? 0.0 : (double) served / requests;
+    }
+
+    /**
+     * @brief The number of results evicted from memory
+     *
+     * @return The number of evictions, spilled or dropped
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @brief The number of results written to the spill directory
+     *
+     * @return The number of spills
+     */
+    public long getSpillCount() {
+        return spills.sum();
+    }
+
+    /**
+     * @brief The number of results which could not be written to the spill
+     *        directory
+     *
+     * @return The number of failed spills, whose results were kept in memory
+     */
+    public long getSpillFailureCount() {
+        return spillFailures.sum();
+    }
+
+    /**
+     * @brief The total weight of the results in memory
+     *
+     * @return The weight, the results being written to disk included
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @brief The number of results in memory
+     *
+     * @return The number of results, the ones being written to disk included
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size() + spilling.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @brief The versions of the upstream results of a node
+     *
+     * @param[in] children The keys of the children of the node
+     * @param[in] window The time window
+     * @param[in] upstream The results of the children, in the same order
+     * @return The version of the result stored for each child,
+     *         <tt>NO_RESULT</tt> for a <code>null</code> result and
+     *         <tt>UNKNOWN</tt> for a result which is not stored
+     */
+    private long[] fingerprint(final List<Key> children, final long window, final List<?> upstream) {
+
+        final int size = (children == null) ? 0 : children.size();
+        if (upstream.size() != size) // precondition
+            throw new IllegalArgumentException("Expected " + size + " upstream results, got " + upstream.size());
+
+        final long[] versions = new long[size];
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++)
+                versions[i] = (upstream.get(i) == null) ? NO_RESULT
+                    : versionOf(new WindowKey(children.get(i).getDouble(), window));
+        } finally {
+            lock.unlock();
+        }
+
+        return versions;
+
+    }
+
+    /**
+     * @brief The version of the result stored for a node in a time window
+     *
+     * @param[in] id The node and window of the result
+     * @return The version, <tt>UNKNOWN</tt> if no result is stored
+     */
+    @GuardedBy("lock")
+    private long versionOf(final WindowKey id) {
+
+        Entry entry = entries.get(id);
+        if (entry == null) entry = spilling.get(id);
+        if (entry != null) return entry.version;
+
+        Long stored = spilled.get(id);
+        if (stored == null) stored = loading.get(id);
+        return (stored == null) ? UNKNOWN : stored.longValue();
+
+    }
+
+    /**
+     * @brief The result of a node in a time window, computed from given
+     *        versions of the upstream results
+     *
+     * @description A result computed from other upstream results is removed.
+     *              A spilled result is read outside of the lock.
+     *
+     * @param[in] id The node and window of the result
+     * @param[in] fingerprint The versions of the upstream results the result
+     *            must have been computed from, <code>null</code> to accept any
+     * @return The result, <code>null</code> if it is not stored
+     */
+    private Object lookup(final WindowKey id, final long[] fingerprint) {
+
+        final Long onDisk;
+        lock.lock();
+        try {
+            final Entry entry = entries.get(id);
+            if (entry != null && entry.computedFrom(fingerprint)) {
+                touch(entry);
+                hits.increment();
+                return entry.result;
+            }
+
+            final Entry writing = spilling.get(id);
+            if (writing != null && writing.computedFrom(fingerprint)) {
+                // still in memory until its spill completes
+                hits.increment();
+                return writing.result;
+            }
+
+            onDisk = spilled.remove(id);
+            if (onDisk == null) {
+                if (entry != null || writing != null) discard(id); // nothing on disk to delete
+                misses.increment();
+                return null;
+            }
+            loading.put(id, onDisk);
+        } finally {
+            lock.unlock();
+        }
+
+        final Entry read;
+        try {
+            read = readSpilled(id, onDisk.longValue());
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                loading.remove(id, onDisk);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+
+        List<Entry> victims = Collections.emptyList();
+        boolean found = false;
+        lock.lock();
+        try {
+            // the result may have been replaced or invalidated while it was read
+            if (loading.remove(id, onDisk) && read.computedFrom(fingerprint)) {
+                diskHits.increment();
+                victims = storeLocked(read);
+                found = true;
+            } else {
+                misses.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        spill(victims);
+
+        return found ? read.result : null;
+
+    }
+
+    /**
+     * @brief Replace the result of a node in a time window
+     *
+     * @param[in] id The node and window of the result
+     * @param[in] result The result
+     * @param[in] fingerprint The versions of the upstream results it was
+     *            computed from, <code>null</code> if they are unknown
+     */
+    private void store(final WindowKey id, final Object result, final long[] fingerprint) {
+
+        final long resultWeight = weigher.applyAsLong(result);
+        final Path stale;
+        final List<Entry> victims;
+        lock.lock();
+        try {
+            stale = discard(id);
+            victims = storeLocked(new Entry(id, result, resultWeight, ++version, fingerprint));
+        } finally {
+            lock.unlock();
+        }
+        delete(stale);
+        spill(victims);
+
+    }
+
+    /**
+     * @brief Store a result in memory and choose the others to evict
+     *
+     * @description The victims which can be spilled stay in memory, marked as
+     *              being written, until ResultCache#spill(final List) writes
+     *              them; the others are dropped.
+     *
+     * @param[in] entry The result, whose node and window are not stored
+     * @return The victims to write to the spill directory
+     */
+    @GuardedBy("lock")
+    private List<Entry> storeLocked(final Entry entry) {
+
+        if (entry.weight > maxWeight) return Collections.emptyList();
+
+        entry.lastAccess = ++tick;
+        entries.put(entry.id, entry);
+        evictionOrder.add(entry);
+        weight += entry.weight;
+
+        final List<Entry> victims = new ArrayList<Entry>();
+        while (weight - spillingWeight > maxWeight) {
+            final Entry victim = evictionOrder.pollFirst();
+            entries.remove(victim.id);
+            if (spillDirectory != null && victim.result instanceof Serializable) {
+                // the victim leaves the memory only once it is on disk
+                spilling.put(victim.id, victim);
+                spillingWeight += victim.weight;
+                victims.add(victim);
+            } else {
+                weight -= victim.weight;
+                evictions.increment();
+            }
+        }
+
+        return victims;
+
+    }
+
+    /**
+     * @brief Write the victims of an eviction to the spill directory
+     *
+     * @description Called without holding the lock. A victim which cannot be
+     *              written goes back to memory; the file of a victim replaced
+     *              or invalidated meanwhile is deleted.
+     *
+     * @param[in] victims The results being written
+     */
+    private void spill(final List<Entry> victims) {
+
+        for (Entry victim : victims) {
+            boolean written;
+            try {
+                writeSpilled(victim);
+                written = true;
+            } catch (IOException e) {
+                written = false;
+            }
+
+            boolean orphan = false;
+            lock.lock();
+            try {
+                if (!written) spillFailures.increment();
+                if (spilling.remove(victim.id, victim)) {
+                    spillingWeight -= victim.weight;
+                    if (written) {
+                        weight -= victim.weight;
+                        spilled.put(victim.id, victim.version);
+                        spills.increment();
+                        evictions.increment();
+                    } else {
+                        entries.put(victim.id, victim);
+                        evictionOrder.add(victim);
+                    }
+                } else {
+                    orphan = written;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (orphan) delete(fileOf(victim.id, victim.version));
+        }
+
+    }
+
+    /**
+     * @brief Record an access to a result in memory
+     *
+     * @param[in] entry The result
+     */
+    @GuardedBy("lock")
+    private void touch(final Entry entry) {
+        evictionOrder.remove(entry);
+        entry.frequency++;
+        entry.lastAccess = ++tick;
+        evictionOrder.add(entry);
+    }
+
+    /**
+     * @brief Remove the result of a node in a time window
+     *
+     * @description A result being written or read is dropped when its
+     *              transfer completes.
+     *
+     * @param[in] id The node and window of the result
+     * @return The file of the spilled result to delete outside of the lock,
+     *         <code>null</code> if there is none
+     */
+    @GuardedBy("lock")
+    private Path discard(final WindowKey id) {
+
+        final Entry entry = entries.remove(id);
+        if (entry != null) {
+            evictionOrder.remove(entry);
+            weight -= entry.weight;
+        }
+
+        final Entry writing = spilling.remove(id);
+        if (writing != null) {
+            weight -= writing.weight;
+            spillingWeight -= writing.weight;
+        }
+
+        loading.remove(id);
+
+        final Long onDisk = spilled.remove(id);
+        return (onDisk == null) ? null : fileOf(id, onDisk.longValue());
+
+    }
+
+    /**
+     * @brief Delete the file of a spilled result
+     *
+     * @param[in] file The file, <code>null</code> for none
+     * @exception UncheckedIOException
+     *                if the file cannot be deleted
+     */
+    private static void delete(final Path file) {
+        if (file == null) return;
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @brief Write a result and the versions of its upstream results to the
+     *        spill directory
+     *
+     * @param[in] entry The result
+     * @exception IOException
+     *                if the result cannot be written, its file is then deleted
+     */
+    private void writeSpilled(final Entry entry) throws IOException {
+
+        final Path path = fileOf(entry.id, entry.version);
+        try (OutputStream file = Files.newOutputStream(path);
+             ObjectOutputStream out = new ObjectOutputStream(file)) {
+            out.writeObject(entry.result);
+            out.writeObject(entry.upstream);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                e.addSuppressed(ignored);
+            }
+            throw e;
+        }
+
+    }
+
+    /**
+     * @brief Read a result from the spill directory and delete its file
+     *
+     * @param[in] id The node and window of the result
+     * @param[in] version The version of the result
+     * @return The result and the versions of its upstream results, outside of
+     *         the eviction order
+     */
+    private Entry readSpilled(final WindowKey id, final long version) {
+
+        final Path file = fileOf(id, version);
+        try {
+            final Entry entry;
+            try (InputStream in = Files.newInputStream(file);
+                 ObjectInputStream objects = new ObjectInputStream(in)) {
+                final Object result = objects.readObject();
+                entry = new Entry(id, result, weigher.applyAsLong(result), version, (long[]) objects.readObject());
+            }
+            Files.delete(file);
+            return entry;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new UncheckedIOException(new IOException("Unknown class of the result in " + file, e));
+        }
+
+    }
+
+    /**
+     * @brief The file of a spilled result
+     *
+     * @description The version is part of the name, so the file of a result
+     *              replaced while it was being written is never overwritten.
+     *
+     * @param[in] id The node and window of the result
+     * @param[in] version The version of the result
+     * @return The path of the file
+     */
+    private Path fileOf(final WindowKey id, final long version) {
+        return spillDirectory.resolve(Double.toString(id.node) + "_" + id.window + "_" + version + ".result");
+    }
+
+    private static final Comparator<Entry> BY_RECENCY = new Comparator<Entry>() {
+        public int compare(final Entry a, final Entry b) {
+            return Long.compare(a.lastAccess, b.lastAccess);
+        }
+    }; //!< least recently used first
+
+    private static final Comparator<Entry> BY_FREQUENCY = new Comparator<Entry>() {
+        public int compare(final Entry a, final Entry b) {
+            final int byFrequency = Long.compare(a.frequency, b.frequency);
+            return (byFrequency != 0) ? byFrequency : Long.compare(a.lastAccess, b.lastAccess);
+        }
+    }; //!< least frequently used first
+
+    /**
+     * @brief class WindowKey
+     *
+     * @description Node and time window of a result.
+     */
+    private static final class WindowKey {
+
+        private final double node; //!< value of the key of the node
+        private final long window; //!< time window
+
+        private WindowKey(final double node, final long window) {
+            this.node = node;
+            this.window = window;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof WindowKey)) return false;
+            final WindowKey that = (WindowKey) other;
+            return Double.doubleToLongBits(node) == Double.doubleToLongBits(that.node) && window == that.window;
+        }
+
+        @Override
+        public int hashCode() {
+            final long bits = Double.doubleToLongBits(node) * 31 + window;
+            return (int) (bits ^ (bits >>> 32));
+        }
+
+    }
+
+    /**
+     * @brief class Entry
+     *
+     * @description Result in memory with its eviction state.
+     */
+    private static final class Entry {
+
+        private final WindowKey id; //!< node and window of the result
+        private final Object result; //!< the result
+        private final long weight; //!< weight of the result
+        private final long version; //!< version of the result, unique in the cache
+        private final long[] upstream; //!< versions of the upstream results it was computed from, null if unknown
+        private long frequency = 1L; //!< number of accesses
+        private long lastAccess; //!< tick of the last access, unique
+
+        private Entry(final WindowKey id, final Object result, final long weight, final long version,
+                      final long[] upstream) {
+            this.id = id;
+            this.result = result;
+            this.weight = weight;
+            this.version = version;
+            this.upstream = upstream;
+        }
+
+        /**
+         * @brief Whether the result was computed from given versions of the
+         *        upstream results
+         *
+         * @param[in] current The versions of the upstream results,
+         *            <code>null</code> to accept any
+         * @return <code>true</code> if the versions are known and equal, in
+         *         order, to the ones the result was computed from, or if
+         *         either is unknown as a whole
+         */
+        private boolean computedFrom(final long[] current) {
+
+            if (current == null || upstream == null) return true;
+            for (long v : current)
+                if (v == UNKNOWN) return false;
+
+            return Arrays.equals(current, upstream);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class SimulationCheckpoint
+ *
+ * @description State of an in-flight simulation of a tree of
+ *              <tt>Component</tt>s, from which a run interrupted by the death
+ *              of the JVM can be resumed, see
+ *              TreeScheduler#resume(final SimulationCheckpoint).
+ *              <p>
+ *              The checkpoint holds the keys of the tree in postorder, which
+ *              nodes have completed their simulation and the result of every
+ *              completed node whose parent has not. Those are the only results
+ *              a resumed run needs: they rebuild the pending children of the
+ *              unfinished nodes, while the results of the nodes deeper in
+ *              the tree have already been consumed. The results must be
+ *              <code>Serializable</code>.
+ *              </p>
+ *              <p>
+ *              A node counts as completed also when only an ancestor is known
+ *              to be, so the checkpoint taken while the simulation runs is
+ *              consistent whatever the order in which the concurrent
+ *              completions were observed.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public final class SimulationCheckpoint {
+
+    private static final int VERSION = 1; //!< version of the file format
+
+    private final double[] ids; //!< key values of the nodes, in postorder
+    private final boolean[] completed; //!< whether each node has completed its simulation
+    private final Object[] results; //!< result of each completed node with an unfinished parent
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] ids The key values of the nodes, in postorder
+     * @param[in] completed Whether each node has completed its simulation
+     * @param[in] results The result of each node on the frontier
+     */
+    private SimulationCheckpoint(final double[] ids, final boolean[] completed, final Object[] results) {
+        this.ids = ids;
+        this.completed = completed;
+        this.results = results;
+    }
+
+    /**
+     * @brief Take the checkpoint of a running simulation
+     *
+     * @description The flags may change while they are read: a node is
+     *              completed when its flag or the flag of an ancestor is set.
+     *              The result of a node must be published before its flag.
+     *
+     * @param[in] tree The tree under simulation
+     * @param[in] flags The completion flag of each node, non-zero when set
+     * @return The checkpoint
+     */
+    static SimulationCheckpoint capture(final FlatTree tree, final AtomicIntegerArray flags) {
+
+        final int n = tree.size();
+        final double[] ids = new double[n];
+        final boolean[] completed = new boolean[n];
+        final Object[] results = new Object[n];
+
+        // in postorder each parent follows its children
+        for (int i = n - 1; i >= 0; i--) {
+            final int parent = tree.parent(i);
+            completed[i] = flags.get(i) != 0 || (parent >= 0 && completed[parent]);
+        }
+
+        for (int i = 0; i < n; i++) {
+            final Component node = tree.component(i);
+            ids[i] = node.getConnections().getID().getDouble();
+            final int parent = tree.parent(i);
+            if (completed[i] && (parent < 0 || !completed[parent])) results[i] = node.getSimulationResult();
+        }
+
+        return new SimulationCheckpoint(ids, completed, results);
+
+    }
+
+    /**
+     * @brief Read a checkpoint
+     *
+     * @param[in] file The file of the checkpoint
+     * @return The checkpoint
+     * @exception IOException
+     *                if the file cannot be read or is not a checkpoint
+     */
+    public static SimulationCheckpoint read(final Path file) throws IOException {
+        if (file == null) throw new NullPointerException("File cannot be null."); // precondition
+
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objects = new ObjectInputStream(in)) {
+            final int version = objects.readInt();
+            if (version != VERSION) throw new IOException(file + " is not a checkpoint of version " + VERSION);
+
+            final double[] ids = (double[]) objects.readObject();
+            final boolean[] completed = (boolean[]) objects.readObject();
+            final Object[] results = (Object[]) objects.readObject();
+            if (completed.length != ids.length || results.length != ids.length)
+                throw new IOException(file + " is corrupted");
+
+            return new SimulationCheckpoint(ids, completed, results);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(file + " is not a checkpoint", e);
+        }
+    }
+
+    /**
+     * @brief Write the checkpoint
+     *
+     * @description The checkpoint is written to a temporary file, forced to
+     *              the device and moved over the given one, so the file always
+     *              holds a whole checkpoint, even after a crash of the host.
+     *
+     * @param[in] file The file of the checkpoint
+     * @exception IOException
+     *                if the file cannot be written or a result is not
+     *                <code>Serializable</code>
+     */
+    public void write(final Path file) throws IOException {
+        if (file == null) throw new NullPointerException("File cannot be null."); // precondition
+
+        final Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), null, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final ObjectOutputStream out = new ObjectOutputStream(Channels.newOutputStream(channel));
+                out.writeInt(VERSION);
+                out.writeObject(ids);
+                out.writeObject(completed);
+                out.writeObject(results);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @brief It returns if the checkpoint belongs to a tree
+     *
+     * @param[in] tree The tree
+     * @retval TRUE if the tree has the same nodes in the same postorder
+     * @retval FALSE otherwise
+     */
+    boolean matches(final FlatTree tree) {
+
+        if (tree.size() != ids.length) return false;
+        for (int i = 0; i < ids.length; i++) {
+            final Key id = tree.component(i).getConnections().getID();
+            if (Double.doubleToLongBits(id.getDouble()) != Double.doubleToLongBits(ids[i])) return false;
+        }
+
+        return true;
+
+    }
+
+    /**
+     * @brief The number of nodes of the tree
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @brief The number of nodes which have completed their simulation
+     *
+     * @return The number of completed nodes
+     */
+    public int getCompletedCount() {
+        int count = 0;
+        for (boolean done : completed)
+            if (done) count++;
+        return count;
+    }
+
+    /**
+     * @brief It returns if a node has completed its simulation
+     *
+     * @param[in] index The postorder index of the node
+     * @retval TRUE if the node has completed
+     * @retval FALSE otherwise
+     */
+    boolean isCompleted(final int index) {
+        return completed[index];
+    }
+
+    /**
+     * @brief The result of a completed node whose parent has not completed
+     *
+     * @param[in] index The postorder index of the node
+     * @return The result, <code>null</code> for the other nodes
+     */
+    Object result(final int index) {
+        return results[index];
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> ";
+        tmp += "completed " + getCompletedCount() + " of " + size();
+
+        return tmp;
+
+    }
+
+}
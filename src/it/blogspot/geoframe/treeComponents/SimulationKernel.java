@@ -0,0 +1,61 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief interface SimulationKernel
+ *
+ * @description Service provider interface of the model run by each node of
+ *              the tree, e.g. a rainfall-runoff model for the sub-basins or a
+ *              routing model for the nodes with children. The kernel is
+ *              invoked by Component#runSimulation(final Component) without
+ *              holding any lock of the node, so implementations must be
+ *              thread-safe if the same instance is shared among nodes.
+ *              <p>
+ *              The result of a node is delivered to its parent through
+ *              Component#notify(final Key, final Object), hence all the
+ *              kernels of a tree have to share the same result type.
+ *              </p>
+ *
+ * @param <R> The type of the result of the simulation of a node
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public interface SimulationKernel<R> {
+
+    /**
+     * @brief Run the simulation of a node
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] entity The entity of the node
+     * @param[in] upstream The results of the children, in the order of
+     *            Connections#getChildren(); empty for a <tt>Leaf</tt>
+     * @return The result of the simulation of the node
+     */
+    R simulate(final Connections connKeys, final HydroGeoArea entity, final List<R> upstream);
+
+}
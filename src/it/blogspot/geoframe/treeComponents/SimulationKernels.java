@@ -0,0 +1,122 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class SimulationKernels
+ *
+ * @description Factory of the kernels shipped with the tree components.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public final class SimulationKernels {
+
+    private static final SimulationKernel<Object> PLACEHOLDER = new SimulationKernel<Object>() {
+        public Object simulate(final Connections connKeys, final HydroGeoArea entity,
+                               final List<Object> upstream) {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+    }; //!< kernel used when no other kernel is set
+
+    private static final SimulationKernel<Object> NO_OP = new SimulationKernel<Object>() {
+        public Object simulate(final Connections connKeys, final HydroGeoArea entity,
+                               final List<Object> upstream) {
+            return null;
+        }
+    }; //!< kernel doing nothing
+
+    private SimulationKernels() {}
+
+    /**
+     * @brief The default kernel of each node
+     *
+     * @description It sleeps for 5 seconds, as the original body of
+     *              Component#runSimulation(final Component) did. It no longer
+     *              prints the node, thread and parent: install a
+     *              <tt>SimulationTracer</tt> to record them. Its result is
+     *              always <code>null</code>.
+     *
+     * @return The placeholder kernel
+     */
+    public static SimulationKernel<Object> placeholder() {
+        return PLACEHOLDER;
+    }
+
+    /**
+     * @brief Adapt an ensemble kernel to the nodes of the tree
+     *
+     * @description The result of each node is a new <tt>EnsembleState</tt>
+     *              of the given shape, filled by the ensemble kernel; a new
+     *              state per simulation keeps the results of the previous
+     *              steps valid for the pipelined executions.
+     *
+     * @param[in] kernel The ensemble kernel
+     * @param[in] members The number of members of the ensemble
+     * @param[in] variables The number of state variables of each member
+     * @return The kernel of the nodes
+     * @exception IllegalArgumentException
+     *                if a size is not positive, or, when the kernel runs, if
+     *                the state of a child has another shape
+     */
+    public static SimulationKernel<EnsembleState> ensemble(final EnsembleKernel kernel, final int members,
+                                                           final int variables) {
+        if (kernel == null) throw new NullPointerException("Kernel cannot be null."); // precondition
+        if (members <= 0 || variables <= 0) // precondition
+            throw new IllegalArgumentException("The members and the variables must be positive");
+
+        return new SimulationKernel<EnsembleState>() {
+            public EnsembleState simulate(final Connections connKeys, final HydroGeoArea entity,
+                                          final List<EnsembleState> upstream) {
+                final EnsembleState state = new EnsembleState(members, variables);
+                for (EnsembleState child : upstream)
+                    if (child == null || !child.hasShapeOf(state))
+                        throw new IllegalArgumentException("Upstream state of " + connKeys.getID() + " is " + child);
+
+                kernel.simulate(connKeys, entity, upstream, state);
+                return state;
+            }
+        };
+    }
+
+    /**
+     * @brief A kernel which does nothing
+     *
+     * @description Useful to measure the overhead of the tree and of the
+     *              schedulers. Its result is always <code>null</code>.
+     *
+     * @return The no-op kernel
+     */
+    public static SimulationKernel<Object> noOp() {
+        return NO_OP;
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class SimulationMetrics
+ *
+ * @description Registry of the <tt>ExecutionMetrics</tt> of the nodes, keyed
+ *              by their <tt>Key</tt>. While a registry is installed, the nodes
+ *              record the duration of their kernel, the wait for their
+ *              children, the latency of the notification of their parent and
+ *              the contended acquisitions of their lock; with no registry
+ *              installed, each of these points costs a single read of a static
+ *              field.
+ *              <p>
+ *              The metrics of each node are recorded on their own, and
+ *              aggregated by type of node or by depth in the tree only when
+ *              queried, so recording never contends on a shared aggregate. The
+ *              registry can be queried at any time, e.g. to find the straggler
+ *              sub-basins with SimulationMetrics#slowest(final int), and dumped
+ *              as a text report at the end of a run.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class SimulationMetrics {
+
+    private static volatile SimulationMetrics installed; //!< registry of the simulations, null if disabled
+
+    private final ConcurrentHashMap<Double, ExecutionMetrics> nodes
+        = new ConcurrentHashMap<Double, ExecutionMetrics>(); //!< metrics of each node by key value
+
+    /**
+     * @brief Install the registry of every simulation
+     *
+     * @param[in] metrics The registry, <code>null</code> to disable the
+     *            metrics
+     */
+    public static void install(final SimulationMetrics metrics) {
+        installed = metrics;
+    }
+
+    /**
+     * @brief The installed registry
+     *
+     * @return The registry, <code>null</code> if the metrics are disabled
+     */
+    public static SimulationMetrics installed() {
+        return installed;
+    }
+
+    /**
+     * @brief Record the run of the kernel of a node
+     *
+     * @param[in] node The node
+     * @param[in] key The key of the node
+     * @param[in] nanos The duration in nanoseconds
+     */
+    void recordExecution(final Component node, final Key key, final long nanos) {
+        metricsOf(node, key).getExecution().record(nanos);
+    }
+
+    /**
+     * @brief Record the wait of a node for its children
+     *
+     * @param[in] node The node
+     * @param[in] key The key of the node
+     * @param[in] nanos The duration in nanoseconds
+     */
+    void recordChildrenWait(final Component node, final Key key, final long nanos) {
+        metricsOf(node, key).getChildrenWait().record(nanos);
+    }
+
+    /**
+     * @brief Record the notification of the parent of a node
+     *
+     * @param[in] node The notifying node
+     * @param[in] key The key of the notifying node
+     * @param[in] nanos The duration in nanoseconds
+     */
+    void recordNotify(final Component node, final Key key, final long nanos) {
+        metricsOf(node, key).getNotifyLatency().record(nanos);
+    }
+
+    /**
+     * @brief Record a contended acquisition of the lock of a node
+     *
+     * @param[in] node The node
+     * @param[in] key The key of the node
+     * @param[in] nanos The wait for the lock in nanoseconds
+     */
+    void recordLockWait(final Component node, final Key key, final long nanos) {
+        metricsOf(node, key).getLockWait().record(nanos);
+    }
+
+    /**
+     * @brief The metrics of a node, created at the first sample
+     *
+     * @param[in] node The node
+     * @param[in] key The key of the node
+     * @return The metrics of the node
+     */
+    private ExecutionMetrics metricsOf(final Component node, final Key key) {
+
+        final Double value = key.getDouble();
+        final ExecutionMetrics metrics = nodes.get(value);
+        if (metrics != null) return metrics;
+
+        final ExecutionMetrics created = new ExecutionMetrics(key, node.getClass());
+        final ExecutionMetrics raced = nodes.putIfAbsent(value, created);
+        return (raced == null) ? created : raced;
+
+    }
+
+    /**
+     * @brief The metrics of a node
+     *
+     * @param[in] key The key of the node
+     * @return The metrics, <code>null</code> if nothing has been recorded
+     */
+    public ExecutionMetrics get(final Key key) {
+        if (key == null) throw new NullPointerException("Key cannot be null."); // precondition
+        return nodes.get(key.getDouble());
+    }
+
+    /**
+     * @brief The metrics of every node
+     *
+     * @return The read-only view of the metrics recorded so far
+     */
+    public Collection<ExecutionMetrics> nodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    /**
+     * @brief The metrics aggregated by type of node
+     *
+     * @return The aggregates, in alphabetical order of the types
+     */
+    public Map<Class<? extends Component>, ExecutionMetrics> byType() {
+
+        final TreeMap<String, ExecutionMetrics> sorted = new TreeMap<String, ExecutionMetrics>();
+        for (ExecutionMetrics metrics : nodes.values()) {
+            final String name = metrics.getType().getName();
+            ExecutionMetrics aggregate = sorted.get(name);
+            if (aggregate == null) {
+                aggregate = new ExecutionMetrics(null, metrics.getType());
+                sorted.put(name, aggregate);
+            }
+            aggregate.merge(metrics);
+        }
+
+        final LinkedHashMap<Class<? extends Component>, ExecutionMetrics> byType
+            = new LinkedHashMap<Class<? extends Component>, ExecutionMetrics>();
+        for (ExecutionMetrics aggregate : sorted.values())
+            byType.put(aggregate.getType(), aggregate);
+
+        return byType;
+
+    }
+
+    /**
+     * @brief The metrics aggregated by depth in a tree
+     *
+     * @param[in] tree The tree, whose root has depth 0
+     * @return The aggregates of the depths with at least a node with metrics
+     */
+    public SortedMap<Integer, ExecutionMetrics> byDepth(final FlatTree tree) {
+        if (tree == null) throw new NullPointerException("Tree cannot be null."); // precondition
+
+        final int[] depth = new int[tree.size()];
+        final TreeMap<Integer, ExecutionMetrics> byDepth = new TreeMap<Integer, ExecutionMetrics>();
+
+        // in preorder each parent precedes its children
+        for (int k = 0; k < tree.size(); k++) {
+            final int i = tree.preOrder(k);
+            depth[i] = (tree.parent(i) < 0) ? 0 : depth[tree.parent(i)] + 1;
+
+            final ExecutionMetrics metrics = nodes.get(tree.component(i).getConnections().getID().getDouble());
+            if (metrics == null) continue;
+
+            ExecutionMetrics aggregate = byDepth.get(depth[i]);
+            if (aggregate == null) {
+                aggregate = new ExecutionMetrics(null, null);
+                byDepth.put(depth[i], aggregate);
+            }
+            aggregate.merge(metrics);
+        }
+
+        return byDepth;
+
+    }
+
+    /**
+     * @brief The nodes with the longest total execution
+     *
+     * @param[in] count The maximum number of nodes
+     * @return The metrics of the nodes, slowest first
+     */
+    public List<ExecutionMetrics> slowest(final int count) {
+        if (count < 0) throw new IllegalArgumentException("The count cannot be negative"); // precondition
+
+        final ArrayList<ExecutionMetrics> sorted = new ArrayList<ExecutionMetrics>(nodes.values());
+        Collections.sort(sorted, new Comparator<ExecutionMetrics>() {
+            public int compare(final ExecutionMetrics a, final ExecutionMetrics b) {
+                return Long.compare(b.getExecution().getTotalNanos(), a.getExecution().getTotalNanos());
+            }
+        });
+
+        return new ArrayList<ExecutionMetrics>(sorted.subList(0, Math.min(count, sorted.size())));
+
+    }
+
+    /**
+     * @brief Forget every metric
+     */
+    public void clear() {
+        nodes.clear();
+    }
+
+    /**
+     * @brief Dump the metrics as a text report
+     *
+     * @description The report holds the aggregates by type, by depth when a
+     *              tree is given, and the ten slowest nodes.
+     *
+     * @param[in] out The destination of the report
+     * @param[in] tree The tree of the depths, <code>null</code> to skip them
+     * @exception IOException
+     *                if the destination fails
+     */
+    public void dump(final Appendable out, final FlatTree tree) throws IOException {
+
+        out.append("== metrics by type ==\n");
+        for (Map.Entry<Class<? extends Component>, ExecutionMetrics> entry : byType().entrySet())
+            out.append(entry.getKey().getSimpleName()).append(": ").append(entry.getValue().toString()).append('\n');
+
+        if (tree != null) {
+            out.append("== metrics by depth ==\n");
+            for (Map.Entry<Integer, ExecutionMetrics> entry : byDepth(tree).entrySet())
+                out.append("depth ").append(entry.getKey().toString()).append(": ")
+                   .append(entry.getValue().toString()).append('\n');
+        }
+
+        out.append("== slowest nodes ==\n");
+        for (ExecutionMetrics metrics : slowest(10))
+            out.append(metrics.toString()).append('\n');
+
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.blogspot.geoframe.Connections;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class SimulationTracer
+ *
+ * @description Low-overhead recorder of the simulations of the nodes. While a
+ *              tracer is installed, every simulation records the key of the
+ *              node and of its parent, the thread, the time it became ready,
+ *              and the start and end of its kernel into a ring buffer
+ *              preallocated as plain arrays: recording neither allocates nor
+ *              takes a lock, and the oldest events are overwritten once the
+ *              buffer is full. With no tracer installed, the cost of a
+ *              simulation is a single read of a static field.
+ *              <p>
+ *              After the run the events can be exported in the Chrome trace
+ *              format, to be opened in <tt>chrome://tracing</tt> or Perfetto,
+ *              or as CSV. An export running concurrently with the simulations
+ *              skips the events still being written: each slot is claimed by
+ *              its writer with a compare-and-set, and the exporter copies the
+ *              event and checks, as a sequence lock, that the slot still holds
+ *              the same event afterwards. An event whose slot is still being
+ *              written by an older simulation is dropped.
+ *              </p>
+ *              <p>
+ *              The time a node became ready is the time a scheduler submitted
+ *              it, so the wait in the queue is the start minus the ready time;
+ *              it is zero for the executions without a queue.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class SimulationTracer {
+
+    private static volatile SimulationTracer installed; //!< tracer of the simulations, null if disabled
+
+    private final long epoch = System.nanoTime(); //!< origin of the exported times
+    private final int mask; //!< capacity minus one, the capacity is a power of two
+    private final AtomicLong cursor = new AtomicLong(); //!< number of events claimed so far
+    private final AtomicLongArray published; //!< sequence plus one of the event in each slot, negated while written
+    private final AtomicLong collisions = new AtomicLong(); //!< events dropped for a slot still being written
+    private final double[] node; //!< key value of the node
+    private final double[] parent; //!< key value of the parent, 0 for the root
+    private final long[] threadId; //!< id of the thread
+    private final String[] threadName; //!< name of the thread
+    private final long[] ready; //!< time the node became ready
+    private final long[] start; //!< start of the kernel
+    private final long[] end; //!< end of the kernel
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] capacity The minimum number of events retained, rounded up
+     *            to a power of two
+     * @exception IllegalArgumentException
+     *                if the capacity is not positive or too large
+     */
+    public SimulationTracer(final int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) // precondition
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+
+        final int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        node = new double[size];
+        parent = new double[size];
+        threadId = new long[size];
+        threadName = new String[size];
+        ready = new long[size];
+        start = new long[size];
+        end = new long[size];
+    }
+
+    /**
+     * @brief Install the tracer of every simulation
+     *
+     * @param[in] tracer The tracer, <code>null</code> to disable the tracing
+     */
+    public static void install(final SimulationTracer tracer) {
+        installed = tracer;
+    }
+
+    /**
+     * @brief The installed tracer
+     *
+     * @return The tracer, <code>null</code> if the tracing is disabled
+     */
+    public static SimulationTracer installed() {
+        return installed;
+    }
+
+    /**
+     * @brief Record a simulation
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] readyNanos The time the node became ready, 0 if unknown
+     * @param[in] startNanos The start of the kernel
+     * @param[in] endNanos The end of the kernel
+     */
+    void record(final Connections connKeys, final long readyNanos, final long startNanos,
+                final long endNanos) {
+
+        final long sequence = cursor.getAndIncrement();
+        final int slot = (int) (sequence & mask);
+        final Thread thread = Thread.currentThread();
+
+        // claim the slot, unless an older event is still being written or a newer one took it
+        for (;;) {
+            final long state = published.get(slot);
+            if (state > sequence || -state > sequence) return;
+            if (state < 0L) {
+                collisions.incrementAndGet();
+                return;
+            }
+            if (published.compareAndSet(slot, state, -(sequence + 1))) break;
+        }
+
+        node[slot] = connKeys.getID().getDouble();
+        parent[slot] = Component.isRoot(connKeys) ? 0.0 : connKeys.getPARENT().getDouble();
+        threadId[slot] = thread.getId();
+        threadName[slot] = thread.getName();
+        ready[slot] = (readyNanos == 0L) ? startNanos : readyNanos;
+        start[slot] = startNanos;
+        end[slot] = endNanos;
+        published.lazySet(slot, sequence + 1);
+
+    }
+
+    /**
+     * @brief The number of events retained
+     *
+     * @return The number of events, at most the capacity
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), mask + 1L);
+    }
+
+    /**
+     * @brief The number of events overwritten by newer ones, or dropped for
+     *        a slot still being written
+     *
+     * @return The number of events lost
+     */
+    public long dropped() {
+        return Math.max(0L, cursor.get() - (mask + 1L)) + collisions.get();
+    }
+
+    /**
+     * @brief Forget every event
+     *
+     * @description Not to be called while simulations are running.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++)
+            published.set(i, 0L);
+        cursor.set(0L);
+        collisions.set(0L);
+    }
+
+    /**
+     * @brief Export the events in the Chrome trace format
+     *
+     * @description Each simulation is a complete event of the thread running
+     *              it, with the parent and the wait in the queue as arguments.
+     *              The times are in microseconds from the creation of the
+     *              tracer.
+     *
+     * @param[in] out The destination of the JSON document
+     * @exception IOException
+     *                if the destination fails
+     */
+    public void exportChromeTrace(final Appendable out) throws IOException {
+
+        out.append("{\"traceEvents\":[");
+        boolean first = true;
+        final long last = cursor.get();
+        for (long sequence = Math.max(0L, last - (mask + 1L)); sequence < last; sequence++) {
+            final int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) continue;
+
+            final double eventNode = node[slot];
+            final double eventParent = parent[slot];
+            final long eventThreadId = threadId[slot];
+            final String eventThreadName = threadName[slot];
+            final long eventReady = ready[slot];
+            final long eventStart = start[slot];
+            final long eventEnd = end[slot];
+            if (!isIntact(slot, sequence)) continue;
+
+            out.append(first ? "\n" : ",\n");
+            first = false;
+            out.append("{\"name\":\"Node ").append(Double.toString(eventNode)).append('"');
+            out.append(",\"cat\":\"simulation\",\"ph\":\"X\",\"pid\":1");
+            out.append(",\"tid\":").append(Long.toString(eventThreadId));
+            out.append(",\"ts\":").append(micros(eventStart - epoch));
+            out.append(",\"dur\":").append(micros(eventEnd - eventStart));
+            out.append(",\"args\":{\"parent\":").append(Double.toString(eventParent));
+            out.append(",\"thread\":\"").append(escape(eventThreadName)).append('"');
+            out.append(",\"wait_us\":").append(micros(eventStart - eventReady));
+            out.append("}}");
+        }
+        out.append("\n]}\n");
+
+    }
+
+    /**
+     * @brief Export the events as CSV
+     *
+     * @description One line per simulation, after a header; the times are in
+     *              nanoseconds from the creation of the tracer.
+     *
+     * @param[in] out The destination of the CSV document
+     * @exception IOException
+     *                if the destination fails
+     */
+    public void exportCsv(final Appendable out) throws IOException {
+
+        out.append("node,parent,thread_id,thread_name,ready_ns,start_ns,end_ns,wait_ns\n");
+        final long last = cursor.get();
+        for (long sequence = Math.max(0L, last - (mask + 1L)); sequence < last; sequence++) {
+            final int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) continue;
+
+            final double eventNode = node[slot];
+            final double eventParent = parent[slot];
+            final long eventThreadId = threadId[slot];
+            final String eventThreadName = threadName[slot];
+            final long eventReady = ready[slot];
+            final long eventStart = start[slot];
+            final long eventEnd = end[slot];
+            if (!isIntact(slot, sequence)) continue;
+
+            out.append(Double.toString(eventNode)).append(',');
+            out.append(Double.toString(eventParent)).append(',');
+            out.append(Long.toString(eventThreadId)).append(',');
+            out.append('"').append(eventThreadName.replace("\"", "\"\"")).append("\",");
+            out.append(Long.toString(eventReady - epoch)).append(',');
+            out.append(Long.toString(eventStart - epoch)).append(',');
+            out.append(Long.toString(eventEnd - epoch)).append(',');
+            out.append(Long.toString(eventStart - eventReady)).append('\n');
+        }
+
+    }
+
+    /**
+     * @brief Whether a slot still holds the event copied from it
+     *
+     * @description The check is a compare-and-set leaving the slot
+     *              unchanged: its volatile write keeps the copies of the
+     *              fields from being read after it, as a plain volatile read
+     *              would not.
+     *
+     * @param[in] slot The slot
+     * @param[in] sequence The sequence of the event
+     * @return <code>true</code> if no writer claimed the slot meanwhile
+     */
+    private boolean isIntact(final int slot, final long sequence) {
+        return published.compareAndSet(slot, sequence + 1, sequence + 1);
+    }
+
+    /**
+     * @brief Convert nanoseconds into the microseconds of the Chrome format
+     *
+     * @param[in] nanos The nanoseconds
+     * @return The microseconds, with the nanoseconds as decimals
+     */
+    private static String micros(final long nanos) {
+        return Double.toString(nanos / 1000.0);
+    }
+
+    /**
+     * @brief Escape a string for a JSON document
+     *
+     * @param[in] text The string
+     * @return The escaped string
+     */
+    private static String escape(final String text) {
+
+        final StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\') escaped.append('\\').append(c);
+            else if (c < 0x20) escaped.append(String.format("\\u%04x", (int) c));
+            else escaped.append(c);
+        }
+
+        return escaped.toString();
+
+    }
+
+}
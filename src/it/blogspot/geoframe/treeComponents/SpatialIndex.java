@@ -0,0 +1,382 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class SpatialIndex
+ *
+ * @description Uniform grid over the reaches of a tree of
+ *              <tt>Component</tt>s, each reach being the segment from the
+ *              start point to the end point of its node. It finds the reach a
+ *              measurement point falls on, e.g. to localize a
+ *              <tt>LocalNode</tt>, looking only at the cells around the point
+ *              instead of scanning every node.
+ *              <p>
+ *              The grid is built in bulk from a root: the cell side is chosen
+ *              so that there are about as many cells as reaches, and each
+ *              reach is registered in every cell overlapped by its bounding
+ *              box. The cells are stored as two flat arrays, the offsets of
+ *              the cells and the reaches of all of them. Nodes without an
+ *              entity or with undefined coordinates are not indexed.
+ *              </p>
+ *              <p>
+ *              The index is a snapshot of the tree at its construction: it
+ *              must be rebuilt after the topology or the entities change.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public final class SpatialIndex {
+
+    private final Component[] nodes; //!< indexed nodes
+    private final double[] segments; //!< start x, start y, end x and end y of each node
+    private final double minX; //!< abscissa of the lower left corner of the grid
+    private final double minY; //!< ordinate of the lower left corner of the grid
+    private final double cellSize; //!< side of a cell
+    private final int columns; //!< number of columns of the grid
+    private final int rows; //!< number of rows of the grid
+    private final int[] cellStart; //!< offset of the reaches of each cell, one more than the cells
+    private final int[] cellNodes; //!< indices of the reaches of all the cells
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] nodes The nodes to index
+     * @param[in] segments The coordinates of the reach of each node
+     */
+    private SpatialIndex(final Component[] nodes, final double[] segments) {
+
+        this.nodes = nodes;
+        this.segments = segments;
+        final int n = nodes.length;
+
+        double lowX = Double.POSITIVE_INFINITY, lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY, highY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4 * n; i += 2) {
+            lowX = Math.min(lowX, segments[i]);
+            highX = Math.max(highX, segments[i]);
+            lowY = Math.min(lowY, segments[i + 1]);
+            highY = Math.max(highY, segments[i + 1]);
+        }
+        if (n == 0) lowX = lowY = highX = highY = 0.0;
+
+        final double width = highX - lowX;
+        final double height = highY - lowY;
+        double side = Math.sqrt(width * height / Math.max(n, 1));
+        if (!(side > 0.0)) side = Math.max(width, height) / Math.max(n, 1);
+        if (!(side > 0.0)) side = 1.0;
+
+        minX = lowX;
+        minY = lowY;
+        cellSize = side;
+        columns = (int) Math.min(width / side + 1, n + 1);
+        rows = (int) Math.min(height / side + 1, n + 1);
+
+        // counting sort of the reaches by cell
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++)
+            for (int row = rowOf(Math.min(y0(i), y1(i))); row <= rowOf(Math.max(y0(i), y1(i))); row++)
+                for (int column = columnOf(Math.min(x0(i), x1(i))); column <= columnOf(Math.max(x0(i), x1(i))); column++)
+                    cellStart[row * columns + column + 1]++;
+        for (int cell = 0; cell < columns * rows; cell++)
+            cellStart[cell + 1] += cellStart[cell];
+
+        cellNodes = new int[cellStart[columns * rows]];
+        final int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < n; i++)
+            for (int row = rowOf(Math.min(y0(i), y1(i))); row <= rowOf(Math.max(y0(i), y1(i))); row++)
+                for (int column = columnOf(Math.min(x0(i), x1(i))); column <= columnOf(Math.max(x0(i), x1(i))); column++)
+                    cellNodes[fill[row * columns + column]++] = i;
+
+    }
+
+    /**
+     * @brief Build the index of a tree
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     * @return The index of the reaches of every node of the tree
+     */
+    public static SpatialIndex of(final Component root) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+
+        final FlatTree tree = root.subtree();
+        final ArrayList<Component> indexed = new ArrayList<Component>(tree.size());
+        final double[] coordinates = new double[4 * tree.size()];
+        for (int i = 0; i < tree.size(); i++) {
+            final HydroGeoArea entity = tree.component(i).getEntity();
+            if (entity == null) continue;
+
+            final int offset = 4 * indexed.size();
+            if (!putPoint(coordinates, offset, entity.getStartPoint()) ||
+                !putPoint(coordinates, offset + 2, entity.getEndPoint())) continue;
+            indexed.add(tree.component(i));
+        }
+
+        return new SpatialIndex(indexed.toArray(new Component[indexed.size()]),
+                                Arrays.copyOf(coordinates, 4 * indexed.size()));
+    }
+
+    /**
+     * @brief The number of indexed nodes
+     *
+     * @return The number of reaches
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @brief Find the reach nearest to a point
+     *
+     * @param[in] point The point
+     * @return The node of the nearest reach, <code>null</code> if the index
+     *         is empty
+     */
+    public Component nearest(final HydroGeoPoint point) {
+        if (point == null) throw new NullPointerException("Point cannot be null."); // precondition
+
+        return nearest(point.getX(), point.getY());
+    }
+
+    /**
+     * @brief Find the reach nearest to a point
+     *
+     * @description The rings of cells around the cell of the point are
+     *              visited outwards, until no reach of the next ring can be
+     *              nearer than the best one found.
+     *
+     * @param[in] x The abscissa of the point
+     * @param[in] y The ordinate of the point
+     * @return The node of the nearest reach, <code>null</code> if the index
+     *         is empty
+     */
+    public Component nearest(final double x, final double y) {
+
+        final int column = columnOf(x);
+        final int row = rowOf(y);
+        final int maxRing = Math.max(columns, rows);
+
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ring < maxRing; ring++) {
+            for (int r = Math.max(row - ring, 0); r <= Math.min(row + ring, rows - 1); r++) {
+                final boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = Math.max(column - ring, 0); c <= Math.min(column + ring, columns - 1); c++) {
+                    if (!edgeRow && c != column - ring && c != column + ring) continue;
+
+                    final int cell = r * columns + c;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        final double distance = squaredDistance(cellNodes[k], x, y);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = cellNodes[k];
+                        }
+                    }
+                }
+            }
+
+            // the reaches not seen yet are at least ring cells away
+            final double bound = ring * cellSize;
+            if (best >= 0 && bestDistance <= bound * bound) break;
+        }
+
+        return (best < 0) ? null : nodes[best];
+
+    }
+
+    /**
+     * @brief Find the reaches within a distance from a point
+     *
+     * @param[in] x The abscissa of the point
+     * @param[in] y The ordinate of the point
+     * @param[in] radius The distance
+     * @return The nodes of the reaches within the distance, from the nearest
+     *         up to the single precision of the distances
+     * @exception IllegalArgumentException
+     *                if the distance is negative
+     */
+    public List<Component> withinRadius(final double x, final double y, final double radius) {
+        if (!(radius >= 0.0)) throw new IllegalArgumentException("The radius cannot be negative"); // precondition
+
+        final double squaredRadius = radius * radius;
+        long[] found = new long[16];
+        int count = 0;
+        for (int r = rowOf(y - radius); r <= rowOf(y + radius); r++) {
+            for (int c = columnOf(x - radius); c <= columnOf(x + radius); c++) {
+                final int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    final double distance = squaredDistance(cellNodes[k], x, y);
+                    if (distance > squaredRadius) continue;
+
+                    if (count == found.length) found = Arrays.copyOf(found, 2 * count);
+                    // non-negative floats sort as their bits: order by distance, then by index
+                    found[count++] = ((long) Float.floatToIntBits((float) distance) << 31) | cellNodes[k];
+                }
+            }
+        }
+
+        Arrays.sort(found, 0, count);
+        final ArrayList<Component> result = new ArrayList<Component>(count);
+        int last = -1;
+        for (int k = 0; k < count; k++) {
+            final int index = (int) (found[k] & Integer.MAX_VALUE);
+            if (index == last) continue; // a reach registered in several cells
+            result.add(nodes[index]);
+            last = index;
+        }
+
+        return Collections.unmodifiableList(result);
+
+    }
+
+    /**
+     * @brief Simply overriding of the <code>toString</code> method
+     *
+     * @return The state variables of the object
+     */
+    @Override
+    public String toString() {
+
+        String tmp = this.getClass().getSimpleName();
+        tmp += "  ==> ";
+        tmp += nodes.length + " reaches, " + columns + "x" + rows + " cells of side " + cellSize;
+
+        return tmp;
+
+    }
+
+    /**
+     * @brief The squared distance between a point and a reach
+     *
+     * @param[in] index The index of the reach
+     * @param[in] x The abscissa of the point
+     * @param[in] y The ordinate of the point
+     * @return The squared distance
+     */
+    private double squaredDistance(final int index, final double x, final double y) {
+
+        final double dx = x1(index) - x0(index);
+        final double dy = y1(index) - y0(index);
+        final double length = dx * dx + dy * dy;
+        double t = (length == 0.0) ? 0.0 : ((x - x0(index)) * dx + (y - y0(index)) * dy) / length;
+        t = Math.max(0.0, Math.min(1.0, t));
+
+        final double px = x0(index) + t * dx - x;
+        final double py = y0(index) + t * dy - y;
+        return px * px + py * py;
+
+    }
+
+    /**
+     * @brief The column of the cell of an abscissa, clamped to the grid
+     *
+     * @param[in] x The abscissa
+     * @return The column
+     */
+    private int columnOf(final double x) {
+        final double column = Math.floor((x - minX) / cellSize);
+        return (int) Math.max(0.0, Math.min(columns - 1, column));
+    }
+
+    /**
+     * @brief The row of the cell of an ordinate, clamped to the grid
+     *
+     * @param[in] y The ordinate
+     * @return The row
+     */
+    private int rowOf(final double y) {
+        final double row = Math.floor((y - minY) / cellSize);
+        return (int) Math.max(0.0, Math.min(rows - 1, row));
+    }
+
+    /**
+     * @brief The abscissa of the start point of a reach
+     *
+     * @param[in] index The index of the reach
+     * @return The coordinate
+     */
+    private double x0(final int index) {
+        return segments[4 * index];
+    }
+
+    /**
+     * @brief The ordinate of the start point of a reach
+     *
+     * @param[in] index The index of the reach
+     * @return The coordinate
+     */
+    private double y0(final int index) {
+        return segments[4 * index + 1];
+    }
+
+    /**
+     * @brief The abscissa of the end point of a reach
+     *
+     * @param[in] index The index of the reach
+     * @return The coordinate
+     */
+    private double x1(final int index) {
+        return segments[4 * index + 2];
+    }
+
+    /**
+     * @brief The ordinate of the end point of a reach
+     *
+     * @param[in] index The index of the reach
+     * @return The coordinate
+     */
+    private double y1(final int index) {
+        return segments[4 * index + 3];
+    }
+
+    /**
+     * @brief Store the coordinates of a point
+     *
+     * @param[out] coordinates The coordinates of the reaches
+     * @param[in] offset The position of the abscissa
+     * @param[in] point The point
+     * @retval TRUE if the point is defined and finite
+     * @retval FALSE otherwise
+     */
+    private static boolean putPoint(final double[] coordinates, final int offset, final HydroGeoPoint point) {
+
+        if (point == null) return false;
+        coordinates[offset] = point.getX();
+        coordinates[offset + 1] = point.getY();
+
+        return !Double.isNaN(coordinates[offset] + coordinates[offset + 1]) &&
+               !Double.isInfinite(coordinates[offset] + coordinates[offset + 1]);
+
+    }
+
+}
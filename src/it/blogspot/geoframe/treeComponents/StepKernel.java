@@ -0,0 +1,71 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.List;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief interface StepKernel
+ *
+ * @description Kernel of a simulation over many time steps which needs the
+ *              index of the step it computes, e.g. to read the forcing of
+ *              that step. The <tt>PipelinedScheduler</tt> runs different
+ *              steps of different nodes at the same time through the same
+ *              kernel instance, so the step cannot be kept in a field of a
+ *              shared kernel: it is passed to each invocation instead.
+ *              <p>
+ *              The executions without time steps run
+ *              SimulationKernel#simulate(final Connections, final
+ *              HydroGeoArea, final List), which computes the step 0. A
+ *              kernel wrapped by another one, e.g. by
+ *              ResultCache#caching(final SimulationKernel, final
+ *              LongSupplier), receives no step.
+ *              </p>
+ *
+ * @param <R> The type of the result of the simulation of a node
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public interface StepKernel<R> extends SimulationKernel<R> {
+
+    /**
+     * @brief Run a time step of the simulation of a node
+     *
+     * @param[in] connKeys The connections of the node
+     * @param[in] entity The entity of the node
+     * @param[in] upstream The results of the children for the same step, in
+     *            the order of Connections#getChildren(); empty for a
+     *            <tt>Leaf</tt>
+     * @param[in] step The index of the step, from 0
+     * @return The result of the simulation of the node at the step
+     */
+    R simulate(final Connections connKeys, final HydroGeoArea entity, final List<R> upstream, final int step);
+
+    @Override
+    default R simulate(final Connections connKeys, final HydroGeoArea entity, final List<R> upstream) {
+        return simulate(connKeys, entity, upstream, 0);
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import com.google.common.collect.TreeTraverser;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * @brief class SubtreePartitioner
+ *
+ * @description Partitioner cutting a tree of <tt>Component</tt>s into
+ *              subtrees of balanced cost, to be run by separate processes or
+ *              machines. The cost of the heaviest partition is minimized by a
+ *              bisection over its bound: for each bound, the fewest edges
+ *              keeping every partition within it are cut in a single postorder
+ *              sweep. The nodes downstream of every cut, root included, form
+ *              the last partition.
+ *              <p>
+ *              At each cut edge the child is replaced, in the partition of
+ *              the parent, by an <tt>InletProxy</tt>, and the parent is
+ *              replaced, on top of the partition of the child, by an
+ *              <tt>OutletProxy</tt>: each partition runs as a tree on its own
+ *              and ships the result of its outlet through the
+ *              <tt>PartitionTransport</tt> to the partition owning its
+ *              downstream node.
+ *              </p>
+ *              <p>
+ *              The partitioning is installed by setting a new traverser on
+ *              every node, so the traversals of the root cover the last
+ *              partition only; Partitioning#restore() sets the previous
+ *              traversers again and restores the whole tree. The partitioning is deterministic, so
+ *              processes building the same tree agree on the partitions
+ *              without exchanging them.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@Immutable
+public class SubtreePartitioner {
+
+    private static final int BISECTIONS = 64; //!< maximum steps of the search of the bound
+
+    private final int parts; //!< maximum number of partitions
+    private final ToDoubleFunction<? super Component> cost; //!< cost of each node
+    private final PartitionTransport transport; //!< channel between the partitions
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] parts The maximum number of partitions
+     * @param[in] cost The cost of each node, which must be non-negative, e.g.
+     *            CriticalPath#unitCost() to balance the number of nodes
+     * @param[in] transport The channel between the partitions
+     * @exception IllegalArgumentException
+     *                if the number of partitions is not positive
+     */
+    public SubtreePartitioner(final int parts, final ToDoubleFunction<? super Component> cost,
+                              final PartitionTransport transport) {
+        if (parts <= 0) throw new IllegalArgumentException("The number of partitions must be positive"); // precondition
+        if (cost == null) throw new NullPointerException("Cost cannot be null."); // precondition
+        if (transport == null) throw new NullPointerException("Transport cannot be null."); // precondition
+
+        this.parts = parts;
+        this.cost = cost;
+        this.transport = transport;
+    }
+
+    /**
+     * @brief Cut the tree into partitions
+     *
+     * @description Fewer partitions than requested are returned when the
+     *              cost is concentrated in few nodes, since splitting them
+     *              further would not lower the cost of the heaviest one.
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     * @return The partitions, in postorder of their outlets: the last one
+     *         holds the root of the tree, and the handle restoring the
+     *         traversers of the tree
+     * @exception IllegalArgumentException
+     *                if the tree is already partitioned or the cost of a node
+     *                is negative or not a number
+     */
+    public Partitioning partition(final Component root) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+
+        final FlatTree tree = root.subtree();
+        final int n = tree.size();
+
+        final double[] costs = new double[n];
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            final Component node = tree.component(i);
+            if (node instanceof InletProxy || node instanceof OutletProxy) // precondition
+                throw new IllegalArgumentException("The tree is already partitioned");
+
+            costs[i] = cost.applyAsDouble(node);
+            if (!(costs[i] >= 0.0)) {
+                String message = "Negative or undefined cost for ";
+                message += node.toString();
+                throw new IllegalArgumentException(message);
+            }
+            total += costs[i];
+        }
+
+        // the smallest bound on the cost of a partition needing few enough cuts
+        final double heaviest = max(costs);
+        double low = Math.max(heaviest, total / parts);
+        double high = Math.max(heaviest, total);
+        final boolean[] cut = new boolean[n];
+        for (int iteration = 0; iteration < BISECTIONS && low < high; iteration++) {
+            final double bound = low + (high - low) / 2;
+            if (cut(tree, costs, bound, cut) <= parts) high = bound;
+            else low = bound;
+        }
+        final int count = cut(tree, costs, high, cut);
+
+        final int[] partitionOf = new int[n];
+        int next = 0;
+        for (int i = 0; i < n; i++)
+            partitionOf[i] = cut[i] ? next++ : -1;
+
+        // preorder sweep: every node belongs to the partition of its parent
+        final int[] owner = new int[n];
+        for (int k = 0; k < n; k++) {
+            final int i = tree.preOrder(k);
+            owner[i] = (partitionOf[i] >= 0) ? partitionOf[i] : owner[tree.parent(i)];
+        }
+
+        return install(tree, partitionOf, owner, costs, count);
+
+    }
+
+    /**
+     * @brief Cut the fewest edges keeping the cost of each partition within
+     *        a bound
+     *
+     * @description In postorder, the cost of the subtree of a node not
+     *              assigned yet is the cost of the node plus the one of its
+     *              children; while it exceeds the bound, the edge towards the
+     *              heaviest child is cut. The number of cuts is the minimum
+     *              for the bound, see Kundu and Misra, <em>A linear tree
+     *              partitioning algorithm</em>, SIAM J. Comput. 6(1), 1977.
+     *
+     * @param[in] tree The tree
+     * @param[in] costs The cost of each node, none above the bound
+     * @param[in] bound The maximum cost of a partition
+     * @param[out] cut Whether each node is the outlet of a partition
+     * @return The number of partitions, i.e. the number of cuts plus one
+     */
+    private static int cut(final FlatTree tree, final double[] costs, final double bound,
+                           final boolean[] cut) {
+
+        final double[] open = new double[tree.size()];
+        int count = 1;
+        cut[tree.root()] = true;
+
+        // children come before their parent in postorder
+        for (int i = 0; i < tree.size(); i++) {
+            if (i != tree.root()) cut[i] = false;
+
+            final int[] children = new int[tree.childCount(i)];
+            open[i] = costs[i];
+            for (int k = 0; k < children.length; k++) {
+                children[k] = tree.child(i, k);
+                open[i] += open[children[k]];
+            }
+
+            // the few children are sorted by decreasing cost with an insertion
+            for (int k = 1; k < children.length; k++)
+                for (int j = k; j > 0 && open[children[j]] > open[children[j - 1]]; j--) {
+                    final int swap = children[j];
+                    children[j] = children[j - 1];
+                    children[j - 1] = swap;
+                }
+
+            for (int k = 0; k < children.length && open[i] > bound; k++) {
+                cut[children[k]] = true;
+                open[i] -= open[children[k]];
+                count++;
+            }
+        }
+
+        return count;
+
+    }
+
+    /**
+     * @brief The maximum of the costs
+     *
+     * @param[in] costs The costs
+     * @return The maximum, 0 if there are no costs
+     */
+    private static double max(final double[] costs) {
+
+        double max = 0.0;
+        for (double c : costs)
+            max = Math.max(max, c);
+
+        return max;
+
+    }
+
+    /**
+     * @brief Create the proxies and set the traverser of the partitions
+     *
+     * @param[in] tree The whole tree
+     * @param[in] partitionOf The partition whose outlet is each node, -1 if
+     *            the node is not an outlet
+     * @param[in] owner The partition of each node
+     * @param[in] costs The cost of each node
+     * @param[in] count The number of partitions
+     * @return The partitions and the previous traversers of the nodes
+     */
+    private Partitioning install(final FlatTree tree, final int[] partitionOf, final int[] owner,
+                                    final double[] costs, final int count) {
+
+        final int n = tree.size();
+        final int[] outlets = new int[count];
+        final int[] sizes = new int[count];
+        final double[] partitionCosts = new double[count];
+        final Component[] roots = new Component[count];
+        final List<List<InletProxy>> inlets = new ArrayList<List<InletProxy>>();
+        for (int p = 0; p < count; p++)
+            inlets.add(new ArrayList<InletProxy>());
+
+        final IdentityHashMap<Component, Component> standIns = new IdentityHashMap<Component, Component>();
+        for (int i = 0; i < n; i++) {
+            sizes[owner[i]]++;
+            partitionCosts[owner[i]] += costs[i];
+            if (partitionOf[i] < 0) continue;
+
+            outlets[partitionOf[i]] = i;
+            if (i == tree.root()) {
+                roots[partitionOf[i]] = tree.component(i);
+                continue;
+            }
+
+            final Component node = tree.component(i);
+            final Component downstream = tree.component(tree.parent(i));
+            final InletProxy inlet = new InletProxy(node, transport);
+            standIns.put(node, inlet);
+            inlets.get(owner[tree.parent(i)]).add(inlet);
+            roots[partitionOf[i]] = new OutletProxy(downstream, node, transport);
+        }
+
+        final IdentityHashMap<Component, List<Component>> links = new IdentityHashMap<Component, List<Component>>();
+        for (int i = 0; i < n; i++) {
+            final ArrayList<Component> children = new ArrayList<Component>(tree.childCount(i));
+            for (int k = 0; k < tree.childCount(i); k++) {
+                final Component child = tree.component(tree.child(i, k));
+                final Component standIn = standIns.get(child);
+                children.add((standIn == null) ? child : standIn);
+            }
+            links.put(tree.component(i), Collections.unmodifiableList(children));
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component node) {
+                if (node instanceof OutletProxy)
+                    return Collections.singletonList(((OutletProxy) node).getOutlet());
+                if (node instanceof InletProxy) return Collections.emptyList();
+
+                return links.get(node);
+            }
+        };
+
+        final ArrayList<Partition> partitions = new ArrayList<Partition>(count);
+        for (int p = 0; p < count; p++) {
+            final int outlet = outlets[p];
+            final int downstream = (outlet == tree.root()) ? -1 : owner[tree.parent(outlet)];
+            partitions.add(new Partition(p, roots[p], tree.component(outlet), downstream,
+                                         Collections.unmodifiableList(inlets.get(p)),
+                                         sizes[p], partitionCosts[p]));
+        }
+
+        final Map<Component, TreeTraverser<Component>> previous =
+            new IdentityHashMap<Component, TreeTraverser<Component>>(n);
+        for (int i = 0; i < n; i++) {
+            previous.put(tree.component(i), tree.component(i).getTraverser());
+            tree.component(i).setTraverser(traverser);
+        }
+        for (Partition partition : partitions) {
+            partition.getRoot().setTraverser(traverser);
+            for (InletProxy inlet : partition.getInlets())
+                inlet.setTraverser(traverser);
+        }
+
+        return new Partitioning(Collections.unmodifiableList(partitions), previous);
+
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class ThreadPerNodeScheduler
+ *
+ * @description Scheduler of the simulation of a tree of <tt>Component</tt>s
+ *              running each node on its own thread. Every thread blocks until
+ *              the node is ready, i.e. until the Component#notify(final Key)
+ *              of its last child reported it as ready, then runs the
+ *              simulation and releases its parent in turn.
+ *              <p>
+ *              The mode is meant for kernels spending most of their time
+ *              blocked, e.g. reading the forcing data of their
+ *              <tt>HydroGeoArea</tt>. With the factory of virtual threads,
+ *              <code>Thread.ofVirtual().factory()</code> on Java 21 or later,
+ *              a tree of hundreds of thousands of sub-basins runs on a handful
+ *              of carrier threads. The nodes guard their state with
+ *              <code>ReentrantLock</code>s and the waiting threads park on a
+ *              <code>CountDownLatch</code>, so no virtual thread is pinned to
+ *              its carrier.
+ *              </p>
+ *              <p>
+ *              The traverser of the root must have been set, because the
+ *              nodes of the tree are taken from Component#subtree().
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class ThreadPerNodeScheduler {
+
+    private final Component root; //!< root of the tree to simulate
+    private final ThreadFactory threads; //!< factory of the thread of each node
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree to simulate
+     * @param[in] threads The factory of the thread of each node, preferably
+     *            of virtual threads
+     */
+    public ThreadPerNodeScheduler(final Component root, final ThreadFactory threads) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        if (threads == null) throw new NullPointerException("Thread factory cannot be null."); // precondition
+
+        this.root = root;
+        this.threads = threads;
+    }
+
+    /**
+     * @brief Run the simulation of the whole tree
+     *
+     * @description The simulation flags of each node are reset and a thread
+     *              is started for every node. The method blocks until the
+     *              simulation of the root is finished or a node fails; in the
+     *              latter case the threads still waiting are interrupted.
+     *
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     * @exception ExecutionException
+     *                if the simulation of a node throws an exception
+     */
+    public synchronized void run() throws InterruptedException, ExecutionException {
+
+        final FlatTree tree = root.subtree();
+        for (int i = 0; i < tree.size(); i++)
+            tree.component(i).resetSimulationFlags();
+
+        final Execution execution = new Execution(tree);
+        try {
+            execution.start();
+            execution.await();
+        } finally {
+            execution.cancel();
+        }
+
+    }
+
+    /**
+     * @brief class Execution
+     *
+     * @description State of a single run of the scheduler.
+     */
+    private final class Execution {
+
+        private final FlatTree tree; //!< tree to simulate
+        private final CountDownLatch[] ready; //!< released when the node can start
+        private final Thread[] workers; //!< thread of each node
+        private final CountDownLatch done = new CountDownLatch(1); //!< released by the root or by a failure
+        private final AtomicReference<Throwable> failure
+            = new AtomicReference<Throwable>(); //!< first failure of the run
+
+        /**
+         * @brief Constructor
+         *
+         * @param[in] tree The tree to simulate
+         */
+        private Execution(final FlatTree tree) {
+
+            this.tree = tree;
+            ready = new CountDownLatch[tree.size()];
+            workers = new Thread[tree.size()];
+            for (int i = 0; i < tree.size(); i++)
+                ready[i] = new CountDownLatch(tree.component(i).isReadyForSimulation() ? 0 : 1);
+
+        }
+
+        /**
+         * @brief Start the thread of every node
+         *
+         * @description The threads are started in postorder, so the ones of
+         *              the leaves, which can run at once, come first.
+         */
+        private void start() {
+
+            for (int i = 0; i < tree.size(); i++) {
+                final Thread worker = threads.newThread(new NodeTask(i));
+                if (worker == null) throw new IllegalStateException("The thread factory rejected a node");
+                workers[i] = worker;
+                worker.start();
+            }
+
+        }
+
+        /**
+         * @brief Interrupt the threads of the nodes still waiting
+         *
+         * @description Nothing happens to the threads of a finished run.
+         */
+        private void cancel() {
+
+            if (done.getCount() == 0 && failure.get() == null) return;
+            for (Thread worker : workers)
+                if (worker != null) worker.interrupt();
+
+        }
+
+        /**
+         * @brief class NodeTask
+         *
+         * @description Waits until the node is ready, runs its simulation and
+         *              releases the parent if this node was the last child to
+         *              notify it.
+         */
+        private final class NodeTask implements Runnable {
+
+            private final int index; //!< index of the node
+
+            private NodeTask(final int index) {
+                this.index = index;
+            }
+
+            public void run() {
+
+                final Component node = tree.component(index);
+                final int parentIndex = tree.parent(index);
+                final Component parent = (parentIndex < 0) ? null : tree.component(parentIndex);
+
+                try {
+                    ready[index].await();
+                    if (failure.get() != null) return;
+
+                    if (node.runSimulation(parent)) {
+                        parent.markReady();
+                        ready[parentIndex].countDown();
+                    } else if (parent == null) {
+                        done.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    // the run has been cancelled
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    done.countDown();
+                }
+
+            }
+
+        }
+
+        /**
+         * @brief Wait for the end of the run
+         *
+         * @exception InterruptedException
+         *                if the calling thread is interrupted while waiting
+         * @exception ExecutionException
+         *                if the simulation of a node throws an exception
+         */
+        private void await() throws InterruptedException, ExecutionException {
+            done.await();
+            if (failure.get() != null) throw new ExecutionException(failure.get());
+        }
+
+    }
+
+}
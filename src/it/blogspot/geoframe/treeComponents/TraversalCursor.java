@@ -0,0 +1,123 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * @brief class TraversalCursor
+ *
+ * @description Reusable cursor over the <strong>Preorder</strong> or the
+ *              <strong>Postorder</strong> traversal of a subtree of a
+ *              <tt>FlatTree</tt>. Both traversals of a subtree are contiguous
+ *              ranges of the flat representation, so moving the cursor only
+ *              increments a position: once created, a cursor traverses any
+ *              number of subtrees without allocating memory.
+ *              <p>
+ *              A cursor is meant to be owned by a single thread, e.g. one per
+ *              worker of a time-step loop.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@NotThreadSafe
+public final class TraversalCursor {
+
+    private FlatTree tree; //!< tree traversed
+    private boolean preOrder; //!< TRUE for preorder, FALSE for postorder
+    private int position; //!< next position of the traversal
+    private int end; //!< position following the last node of the subtree
+
+    /**
+     * @brief Move the cursor at the beginning of the preorder traversal of a
+     *        subtree
+     *
+     * @param[in] tree The tree to traverse
+     * @param[in] index The index of the main vertex of the subtree
+     * @return <code>this</code>
+     */
+    public TraversalCursor preOrder(final FlatTree tree, final int index) {
+        if (tree == null) throw new NullPointerException("Tree cannot be null."); // precondition
+
+        this.tree = tree;
+        this.preOrder = true;
+        this.position = tree.preOrderPosition(index);
+        this.end = position + tree.subtreeSize(index);
+        return this;
+    }
+
+    /**
+     * @brief Move the cursor at the beginning of the postorder traversal of a
+     *        subtree
+     *
+     * @param[in] tree The tree to traverse
+     * @param[in] index The index of the main vertex of the subtree
+     * @return <code>this</code>
+     */
+    public TraversalCursor postOrder(final FlatTree tree, final int index) {
+        if (tree == null) throw new NullPointerException("Tree cannot be null."); // precondition
+
+        this.tree = tree;
+        this.preOrder = false;
+        this.position = tree.subtreeStart(index);
+        this.end = index + 1;
+        return this;
+    }
+
+    /**
+     * @brief It returns if the traversal has more nodes
+     *
+     * @retval TRUE if there is at least another node to visit
+     * @retval FALSE otherwise
+     */
+    public boolean hasNext() {
+        return position < end;
+    }
+
+    /**
+     * @brief The index of the next node of the traversal
+     *
+     * @return The index of the node in the <tt>FlatTree</tt>
+     * @exception NoSuchElementException
+     *                if the traversal is finished
+     */
+    public int nextIndex() {
+        if (position >= end) throw new NoSuchElementException("The traversal is finished.");
+
+        final int current = position++;
+        return (preOrder) ? tree.preOrder(current) : current;
+    }
+
+    /**
+     * @brief The next node of the traversal
+     *
+     * @return The node
+     * @exception NoSuchElementException
+     *                if the traversal is finished
+     */
+    public Component next() {
+        return tree.component(nextIndex());
+    }
+
+}
@@ -0,0 +1,427 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * @brief class TreeBuilder
+ *
+ * @description Bulk builder of a tree of <tt>Component</tt>s from a flat
+ *              connection table, one row per node: the key of the node, the
+ *              key of its parent, the kind of node, a reference to its entity
+ *              and the keys of its children. The rows are accumulated in
+ *              primitive arrays and TreeBuilder#build() validates the whole
+ *              table in a single pass before creating any node, reporting
+ *              together every duplicated key, orphan, inconsistent link and
+ *              cycle. The nodes are then created with shared keys and
+ *              connections and composed with a single traverser.
+ *              <p>
+ *              The root is the node with the key 1, whose parent is
+ *              conventionally 0. The entity references are resolved by a
+ *              function supplied by the caller, e.g. a lookup in the catalogue
+ *              of the sub-basins; an empty reference gives a
+ *              <code>null</code> entity.
+ *              </p>
+ *              <p>
+ *              The text format read by TreeBuilder#read(final Reader) has a
+ *              row per line, with comma separated fields:
+ *              <code>id,parent,kind,entity[,child...]</code>, where the kind
+ *              is one of <tt>Node</tt>, <tt>GhostNode</tt>, <tt>LocalNode</tt>
+ *              and <tt>Leaf</tt>. Empty child fields, empty lines and lines
+ *              starting with <code>#</code> are skipped.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@NotThreadSafe
+public class TreeBuilder {
+
+    /**
+     * @brief Kind of the node of a row
+     */
+    public enum Kind {
+        NODE("Node"), GHOST_NODE("GhostNode"), LOCAL_NODE("LocalNode"), LEAF("Leaf");
+
+        private final String label; //!< name of the kind in the text format
+
+        Kind(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * @brief Create a node of this kind
+         *
+         * @param[in] connKeys The connections of the node
+         * @param[in] entity The entity of the node
+         * @return The node
+         */
+        Component create(final Connections connKeys, final HydroGeoArea entity) {
+            switch (this) {
+            case NODE:
+                return new Node(connKeys, entity);
+            case GHOST_NODE:
+                return new GhostNode(connKeys, entity);
+            case LOCAL_NODE:
+                return new LocalNode(connKeys, entity);
+            default:
+                return new Leaf(connKeys, entity);
+            }
+        }
+
+        /**
+         * @brief The kind of a node
+         *
+         * @param[in] node The node
+         * @return The kind, <code>null</code> for a node of another type,
+         *         e.g. a proxy
+         */
+        static Kind of(final Component node) {
+            if (node instanceof Node) return NODE;
+            if (node instanceof GhostNode) return GHOST_NODE;
+            if (node instanceof LocalNode) return LOCAL_NODE;
+            if (node instanceof Leaf) return LEAF;
+            return null;
+        }
+
+        /**
+         * @brief The kind with the given name in the text format
+         *
+         * @param[in] label The name of the kind
+         * @return The kind, <code>null</code> if the name is unknown
+         */
+        static Kind of(final String label) {
+            for (Kind kind : values())
+                if (kind.label.equals(label)) return kind;
+            return null;
+        }
+    }
+
+    private static final double ROOT = 1.0; //!< key of the root
+    private static final int MAX_REPORTED = 20; //!< problems listed by a failed validation
+
+    private final Function<? super String, ? extends HydroGeoArea> entities; //!< resolver of the entity references
+
+    private int rows; //!< number of rows
+    private double[] ids = new double[16]; //!< key of the node of each row
+    private double[] parents = new double[16]; //!< key of the parent of each row
+    private Kind[] kinds = new Kind[16]; //!< kind of each row
+    private String[] references = new String[16]; //!< entity reference of each row
+    private int[] childOffset = new int[17]; //!< first child of each row, childOffset[rows] is the end
+    private double[] childIds = new double[16]; //!< keys of the children of every row
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] entities The resolver of the entity references
+     */
+    public TreeBuilder(final Function<? super String, ? extends HydroGeoArea> entities) {
+        if (entities == null) throw new NullPointerException("Entity resolver cannot be null."); // precondition
+
+        this.entities = entities;
+    }
+
+    /**
+     * @brief Add a row to the table
+     *
+     * @param[in] id The key of the node
+     * @param[in] parent The key of the parent, 0 for the root
+     * @param[in] kind The kind of node
+     * @param[in] entity The reference of the entity, <code>null</code> or
+     *            empty for no entity
+     * @param[in] children The keys of the children, in order
+     * @return This builder
+     */
+    public TreeBuilder add(final double id, final double parent, final Kind kind, final String entity,
+                           final double... children) {
+        if (kind == null) throw new NullPointerException("Kind cannot be null."); // precondition
+        if (children == null) throw new NullPointerException("Children cannot be null."); // precondition
+
+        if (rows == ids.length) {
+            final int capacity = rows * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            references = Arrays.copyOf(references, capacity);
+            childOffset = Arrays.copyOf(childOffset, capacity + 1);
+        }
+
+        final int start = childOffset[rows];
+        if (start + children.length > childIds.length)
+            childIds = Arrays.copyOf(childIds, Math.max(childIds.length * 2, start + children.length));
+        System.arraycopy(children, 0, childIds, start, children.length);
+
+        ids[rows] = id;
+        parents[rows] = parent;
+        kinds[rows] = kind;
+        references[rows] = (entity == null || entity.isEmpty()) ? null : entity;
+        childOffset[++rows] = start + children.length;
+
+        return this;
+    }
+
+    /**
+     * @brief Add the rows of a table in the text format
+     *
+     * @param[in] table The table, which is not closed
+     * @return This builder
+     * @exception IOException
+     *                if the table cannot be read
+     * @exception IllegalArgumentException
+     *                if a line is malformed
+     */
+    public TreeBuilder read(final Reader table) throws IOException {
+        if (table == null) throw new NullPointerException("Table cannot be null."); // precondition
+
+        final BufferedReader lines = (table instanceof BufferedReader) ? (BufferedReader) table
+                                                                       : new BufferedReader(table);
+        int number = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+
+            final String[] fields = line.split(",", -1);
+            if (fields.length < 4) throw malformed(number, "expected id,parent,kind,entity[,child...]");
+
+            final Kind kind = Kind.of(fields[2].trim());
+            if (kind == null) throw malformed(number, "unknown kind " + fields[2].trim());
+
+            int count = 0;
+            final double[] children = new double[fields.length - 4];
+            try {
+                for (int k = 4; k < fields.length; k++) {
+                    final String child = fields[k].trim();
+                    if (!child.isEmpty()) children[count++] = Double.parseDouble(child);
+                }
+                add(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()), kind,
+                    fields[3].trim(), Arrays.copyOf(children, count));
+            } catch (NumberFormatException e) {
+                throw malformed(number, e.getMessage());
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @brief The number of rows added so far
+     *
+     * @return The number of rows
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * @brief Validate the table and build the tree
+     *
+     * @return The root of the tree, whose nodes share one traverser
+     * @exception IllegalArgumentException
+     *                listing the problems of the table, if it does not
+     *                describe a single tree
+     */
+    public Component build() {
+
+        final DoubleIntHashMap index = new DoubleIntHashMap(rows);
+        final int root = validate(index);
+
+        final Key[] keys = new Key[rows];
+        for (int i = 0; i < rows; i++)
+            keys[i] = new Key(ids[i]);
+
+        final Component[] nodes = new Component[rows];
+        for (int i = 0; i < rows; i++) {
+            final Key[] childKeys = new Key[childOffset[i + 1] - childOffset[i]];
+            for (int k = 0; k < childKeys.length; k++)
+                childKeys[k] = keys[index.get(childIds[childOffset[i] + k])];
+            final Key parentKey = (i == root) ? new Key(parents[i]) : keys[index.get(parents[i])];
+            final Connections connKeys = new Connections(keys[i], parentKey, childKeys);
+            final HydroGeoArea entity = (references[i] == null) ? null : entities.apply(references[i]);
+
+            nodes[i] = kinds[i].create(connKeys, entity);
+        }
+
+        final IdentityHashMap<Component, List<Component>> links
+            = new IdentityHashMap<Component, List<Component>>(rows);
+        for (int i = 0; i < rows; i++) {
+            final ArrayList<Component> children = new ArrayList<Component>(childOffset[i + 1] - childOffset[i]);
+            for (int c = childOffset[i]; c < childOffset[i + 1]; c++)
+                children.add(nodes[index.get(childIds[c])]);
+            links.put(nodes[i], Collections.unmodifiableList(children));
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component node) {
+                return links.get(node);
+            }
+        };
+        for (Component node : nodes)
+            node.setTraverser(traverser);
+
+        return nodes[root];
+
+    }
+
+    /**
+     * @brief Validate every row of the table in a single pass
+     *
+     * @param[out] index The row of each key
+     * @return The row of the root
+     * @exception IllegalArgumentException
+     *                listing the problems of the table
+     */
+    private int validate(final DoubleIntHashMap index) {
+
+        final ArrayList<String> problems = new ArrayList<String>();
+
+        int root = -1;
+        for (int i = 0; i < rows; i++) {
+            if (index.put(ids[i], i) != DoubleIntHashMap.MISSING) problems.add("duplicated node " + ids[i]);
+            if (ids[i] == ROOT) root = i;
+        }
+        if (root < 0) problems.add("no root with key " + ROOT);
+
+        final int[] listed = new int[rows]; // times each row is listed as a child by its parent
+        for (int i = 0; i < rows; i++) {
+            final int count = childOffset[i + 1] - childOffset[i];
+            if (kinds[i] == Kind.LEAF && count != 0) problems.add("leaf " + ids[i] + " has children");
+            if (kinds[i] != Kind.LEAF && count == 0) problems.add(kinds[i].label + " " + ids[i] + " has no children");
+
+            for (int c = childOffset[i]; c < childOffset[i + 1]; c++) {
+                final int child = index.get(childIds[c]);
+                if (child == DoubleIntHashMap.MISSING)
+                    problems.add("child " + childIds[c] + " of " + ids[i] + " is not in the table");
+                else if (parents[child] != ids[i])
+                    problems.add(childIds[c] + " is a child of " + ids[i] + " but its parent is " + parents[child]);
+                else listed[child]++;
+            }
+        }
+
+        if (root >= 0) {
+            // a root listed as a child, or with a parent in the table, closes a cycle through the root
+            if (listed[root] != 0) problems.add("root " + ROOT + " is listed among the children of " + parents[root]);
+            if (index.get(parents[root]) != DoubleIntHashMap.MISSING)
+                problems.add("root " + ROOT + " has the parent " + parents[root] + " in the table");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            if (i == root) continue;
+            if (index.get(parents[i]) == DoubleIntHashMap.MISSING)
+                problems.add("orphan " + ids[i] + ": parent " + parents[i] + " is not in the table");
+            else if (listed[i] != 1)
+                problems.add(ids[i] + " is listed " + listed[i] + " times among the children of " + parents[i]);
+        }
+
+        if (problems.isEmpty()) findCycles(index, root, problems);
+        if (!problems.isEmpty()) {
+            String message = problems.size() + " problems in the connection table:";
+            for (int p = 0; p < Math.min(problems.size(), MAX_REPORTED); p++)
+                message += "\n  " + problems.get(p);
+            if (problems.size() > MAX_REPORTED) message += "\n  ...";
+            throw new IllegalArgumentException(message);
+        }
+
+        return root;
+
+    }
+
+    /**
+     * @brief Find the rows not reachable from the root
+     *
+     * @description Once every link is consistent, each row has a parent in
+     *              the table, so the rows not reachable from the root are part
+     *              of a cycle or hang from one: walking up their parents meets
+     *              the cycle.
+     *
+     * @param[in] index The row of each key
+     * @param[in] root The row of the root
+     * @param[out] problems The cycles found
+     */
+    private void findCycles(final DoubleIntHashMap index, final int root, final List<String> problems) {
+
+        // 0: not reached, 1: reached from the root, >1: walk that met the row
+        final int[] mark = new int[rows];
+        final int[] stack = new int[rows];
+        int top = 0;
+        stack[top++] = root;
+        mark[root] = 1;
+        while (top > 0) {
+            final int i = stack[--top];
+            for (int c = childOffset[i]; c < childOffset[i + 1]; c++) {
+                final int child = index.get(childIds[c]);
+                if (mark[child] == 0) {
+                    mark[child] = 1;
+                    stack[top++] = child;
+                }
+            }
+        }
+
+        int walk = 1;
+        for (int i = 0; i < rows; i++) {
+            if (mark[i] != 0) continue;
+
+            walk++;
+            int j = i;
+            while (mark[j] == 0) {
+                mark[j] = walk;
+                j = index.get(parents[j]);
+            }
+            if (mark[j] != walk) continue; // hangs from a cycle already reported
+
+            String cycle = "cycle " + ids[j];
+            for (int k = index.get(parents[j]); k != j; k = index.get(parents[k]))
+                cycle += " -> " + ids[k];
+            problems.add(cycle);
+        }
+
+    }
+
+    /**
+     * @brief The exception of a malformed line of a table
+     *
+     * @param[in] line The number of the line
+     * @param[in] reason The problem of the line
+     * @return The exception
+     */
+    private static IllegalArgumentException malformed(final int line, final String reason) {
+        return new IllegalArgumentException("Malformed line " + line + " of the connection table: " + reason);
+    }
+
+}
@@ -0,0 +1,419 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class TreeScheduler
+ *
+ * @description Dependency-driven scheduler of the simulation of a tree of
+ *              <tt>Component</tt>s. Every node ready for the simulation, i.e.
+ *              every <tt>Leaf</tt>, is submitted to the executor; each parent
+ *              is submitted by the child whose Component#notify(final Key)
+ *              made it ready, so no node is ever polled. Independent
+ *              sub-basins run concurrently on all the threads made available
+ *              by the executor.
+ *              <p>
+ *              The traverser of the root must have been set, because the
+ *              nodes of the tree are taken from Component#subtree(), which is
+ *              rebuilt only when the topology of the tree changes.
+ *              </p>
+ *              <p>
+ *              When a cost function is given, the ready nodes are dispatched
+ *              in order of decreasing <tt>CriticalPath</tt>: the tasks are
+ *              <code>Comparable</code>, and an executor ordering its queue,
+ *              such as TreeScheduler#newPriorityExecutor(final int), runs
+ *              first the nodes with the longest remaining path to the root.
+ *              With any other executor the order is the FIFO one.
+ *              </p>
+ *              <p>
+ *              When checkpoints are enabled, a background thread periodically
+ *              writes a <tt>SimulationCheckpoint</tt> of the run without
+ *              stopping the simulation; a run interrupted by the death of the
+ *              JVM is resumed by TreeScheduler#resume(final
+ *              SimulationCheckpoint), which simulates only the unfinished
+ *              nodes.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class TreeScheduler {
+
+    private final Component root; //!< root of the tree to simulate
+    private final Executor executor; //!< executor running the simulations
+    private final ToDoubleFunction<? super Component> cost; //!< cost of each node, null for FIFO dispatch
+    @GuardedBy("this") private Path checkpointFile; //!< file of the checkpoints, null to disable them
+    @GuardedBy("this") private long checkpointMillis; //!< period of the checkpoints
+    private volatile IOException checkpointFailure; //!< last failed checkpoint of the current run
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] root The root of the tree to simulate
+     * @param[in] executor The executor running the simulation of each node
+     */
+    public TreeScheduler(final Component root, final Executor executor) {
+        this(root, executor, null);
+    }
+
+    /**
+     * @brief Constructor of a scheduler prioritizing the critical path
+     *
+     * @param[in] root The root of the tree to simulate
+     * @param[in] executor The executor running the simulation of each node
+     * @param[in] cost The estimated or measured cost of each node, see
+     *            CriticalPath; <code>null</code> for FIFO dispatch
+     */
+    public TreeScheduler(final Component root, final Executor executor,
+                         final ToDoubleFunction<? super Component> cost) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        if (executor == null) throw new NullPointerException("Executor cannot be null."); // precondition
+
+        this.root = root;
+        this.executor = executor;
+        this.cost = cost;
+    }
+
+    /**
+     * @brief Create an executor running first the tasks with the highest
+     *        priority
+     *
+     * @description The executor accepts only the tasks of a scheduler with
+     *              a cost function, which are <code>Comparable</code>.
+     *
+     * @param[in] threads The number of threads
+     * @return The executor, to be shut down by the caller
+     */
+    public static ThreadPoolExecutor newPriorityExecutor(final int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                      new PriorityBlockingQueue<Runnable>());
+    }
+
+    /**
+     * @brief Enable the periodic checkpoints of the runs
+     *
+     * @param[in] file The file of the checkpoints, overwritten by each of
+     *            them; <code>null</code> to disable the checkpoints
+     * @param[in] periodMillis The period of the checkpoints, in milliseconds
+     * @exception IllegalArgumentException
+     *                if the period is not positive
+     */
+    public synchronized void setCheckpoints(final Path file, final long periodMillis) {
+        if (file != null && periodMillis <= 0) // precondition
+            throw new IllegalArgumentException("The period must be positive");
+
+        checkpointFile = file;
+        checkpointMillis = periodMillis;
+    }
+
+    /**
+     * @brief The last checkpoint of the current or last run which failed
+     *
+     * @description A failed checkpoint does not stop the simulation; the
+     *              following one is attempted anyway.
+     *
+     * @return The failure, <code>null</code> if every checkpoint succeeded
+     */
+    public IOException getCheckpointFailure() {
+        return checkpointFailure;
+    }
+
+    /**
+     * @brief Run the simulation of the whole tree
+     *
+     * @description The simulation flags of each node are reset, then
+     *              the nodes ready for the simulation are submitted. The method
+     *              blocks until the simulation of the root is finished or a
+     *              node fails.
+     *
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     * @exception ExecutionException
+     *                if the simulation of a node throws an exception
+     */
+    public synchronized void run() throws InterruptedException, ExecutionException {
+        execute(null);
+    }
+
+    /**
+     * @brief Resume the simulation of the whole tree from a checkpoint
+     *
+     * @description The results of the checkpoint are handed to the parents
+     *              of the completed nodes, rebuilding their pending children;
+     *              then only the nodes which had not completed are simulated.
+     *              The kernels must be the ones of the interrupted run.
+     *
+     * @param[in] checkpoint The checkpoint of the interrupted run
+     * @exception IllegalArgumentException
+     *                if the checkpoint belongs to another tree
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     * @exception ExecutionException
+     *                if the simulation of a node throws an exception
+     */
+    public synchronized void resume(final SimulationCheckpoint checkpoint)
+        throws InterruptedException, ExecutionException {
+        if (checkpoint == null) throw new NullPointerException("Checkpoint cannot be null."); // precondition
+
+        execute(checkpoint);
+    }
+
+    /**
+     * @brief Run the simulation of the nodes not completed yet
+     *
+     * @param[in] checkpoint The checkpoint to resume from, <code>null</code>
+     *            to simulate the whole tree
+     */
+    @GuardedBy("this")
+    private void execute(final SimulationCheckpoint checkpoint) throws InterruptedException, ExecutionException {
+
+        final FlatTree tree = root.subtree();
+        if (checkpoint != null && !checkpoint.matches(tree))
+            throw new IllegalArgumentException("The checkpoint does not belong to the tree"); // precondition
+
+        final CriticalPath priorities = (cost == null) ? null : CriticalPath.of(tree, cost);
+        final Execution execution = new Execution(tree, priorities);
+
+        for (int i = 0; i < tree.size(); i++)
+            tree.component(i).resetSimulationFlags();
+
+        if (checkpoint != null) {
+            for (int i = 0; i < tree.size(); i++) {
+                if (!checkpoint.isCompleted(i)) continue;
+
+                execution.completed.set(i, 1);
+                final int parent = tree.parent(i);
+                if (parent >= 0 && checkpoint.isCompleted(parent)) continue;
+
+                final Component node = tree.component(i);
+                node.restoreSimulationResult(checkpoint.result(i));
+                if (parent >= 0) tree.component(parent).notify(node.getConnections().getID(), checkpoint.result(i));
+            }
+            if (checkpoint.isCompleted(tree.root())) return;
+        }
+
+        // in postorder a child may make its parent ready before the loop reaches it
+        final ArrayList<Integer> ready = new ArrayList<Integer>();
+        for (int i = 0; i < tree.size(); i++)
+            if (execution.completed.get(i) == 0 && tree.component(i).isReadyForSimulation()) ready.add(i);
+
+        if (priorities != null) {
+            // the first tasks may start without queueing: submit them by priority
+            Collections.sort(ready, new Comparator<Integer>() {
+                public int compare(final Integer a, final Integer b) {
+                    return Double.compare(priorities.remaining(b), priorities.remaining(a));
+                }
+            });
+        }
+
+        checkpointFailure = null;
+        final ScheduledExecutorService checkpoints = (checkpointFile == null) ? null
+                                                                             : execution.startCheckpoints();
+        try {
+            for (int index : ready)
+                execution.submit(index);
+
+            execution.await();
+        } finally {
+            if (checkpoints != null) checkpoints.shutdown();
+        }
+        // no checkpoint is written after the end of the run
+        if (checkpoints != null) checkpoints.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+    }
+
+    /**
+     * @brief class Execution
+     *
+     * @description State of a single run of the scheduler. Keeping it apart
+     *              from the scheduler ensures that tasks still running after a
+     *              failed run never touch the state of the following one.
+     */
+    private final class Execution {
+
+        private final FlatTree tree; //!< tree to simulate
+        private final CriticalPath priorities; //!< priority of each node, null for FIFO dispatch
+        private final AtomicIntegerArray completed; //!< set when the simulation of each node ends
+        private final CountDownLatch done = new CountDownLatch(1); //!< released by the root or by a failure
+        private final AtomicReference<Throwable> failure
+            = new AtomicReference<Throwable>(); //!< first failure of the run
+
+        /**
+         * @brief Constructor
+         *
+         * @param[in] tree The tree to simulate
+         * @param[in] priorities The priority of each node, <code>null</code>
+         *            for FIFO dispatch
+         */
+        private Execution(final FlatTree tree, final CriticalPath priorities) {
+            this.tree = tree;
+            this.priorities = priorities;
+            completed = new AtomicIntegerArray(tree.size());
+        }
+
+        /**
+         * @brief Start writing the checkpoints of the run
+         *
+         * @description The checkpoints are taken on a daemon thread, reading
+         *              the completion flags and the results without stopping
+         *              the simulation.
+         *
+         * @return The service writing the checkpoints, to be shut down at the
+         *         end of the run
+         */
+        private ScheduledExecutorService startCheckpoints() {
+
+            final Path file = checkpointFile;
+            final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(final Runnable task) {
+                    final Thread thread = new Thread(task, "tree-checkpoints");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            service.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        SimulationCheckpoint.capture(tree, completed).write(file);
+                    } catch (IOException e) {
+                        checkpointFailure = e;
+                    }
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+
+            return service;
+
+        }
+
+        /**
+         * @brief Submit the simulation of a node to the executor
+         *
+         * @description Once the simulation of the node is finished, its
+         *              parent is submitted if the notification of this node was
+         *              the one that made it ready, so siblings finishing at the
+         *              same time submit the parent only once.
+         *
+         * @param[in] index The index of the node to simulate
+         */
+        private void submit(final int index) {
+
+            tree.component(index).markReady();
+            executor.execute((priorities == null) ? new SimulationTask(index)
+                                                  : new PrioritizedTask(index, priorities.remaining(index)));
+
+        }
+
+        /**
+         * @brief class SimulationTask
+         *
+         * @description Runs the simulation of a node and submits its parent
+         *              when it becomes ready.
+         */
+        private class SimulationTask implements Runnable {
+
+            private final int index; //!< index of the node
+
+            private SimulationTask(final int index) {
+                this.index = index;
+            }
+
+            public void run() {
+
+                final Component node = tree.component(index);
+                final int parentIndex = tree.parent(index);
+                final Component parent = (parentIndex < 0) ? null : tree.component(parentIndex);
+
+                try {
+                    if (failure.get() != null) return;
+
+                    final boolean parentReady = node.runSimulation(parent);
+                    completed.set(index, 1); // after the result, read by the checkpoints
+                    if (parentReady) submit(parentIndex);
+                    else if (parent == null) done.countDown();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    done.countDown();
+                }
+
+            }
+
+        }
+
+        /**
+         * @brief class PrioritizedTask
+         *
+         * @description Simulation task ordered by decreasing remaining path,
+         *              so that a priority queue returns first the task on the
+         *              longest path.
+         */
+        private final class PrioritizedTask extends SimulationTask implements Comparable<PrioritizedTask> {
+
+            private final double priority; //!< remaining path of the node
+
+            private PrioritizedTask(final int index, final double priority) {
+                super(index);
+                this.priority = priority;
+            }
+
+            public int compareTo(final PrioritizedTask other) {
+                return Double.compare(other.priority, priority);
+            }
+
+        }
+
+        /**
+         * @brief Wait for the end of the run
+         *
+         * @exception InterruptedException
+         *                if the calling thread is interrupted while waiting
+         * @exception ExecutionException
+         *                if the simulation of a node throws an exception
+         */
+        private void await() throws InterruptedException, ExecutionException {
+            done.await();
+            if (failure.get() != null) throw new ExecutionException(failure.get());
+        }
+
+    }
+
+}
@@ -0,0 +1,498 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.hydroGeoEntities.point.HydroGeoPoint;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class TreeSnapshot
+ *
+ * @description Compact binary snapshot of a tree of <tt>Component</tt>s,
+ *              written once and then opened through a read-only memory
+ *              mapping: opening costs a few system calls whatever the size of
+ *              the basin, and the JVMs of a host opening the same file share
+ *              its pages in the page cache.
+ *              <p>
+ *              The snapshot holds, in postorder, the kind and the key of each
+ *              node, its parent and children, and the coordinates of its start
+ *              and end points; the keys are also stored sorted, so a key is
+ *              found by a binary search on the mapped file. The topology and
+ *              the coordinates are read straight from the mapping; the
+ *              <tt>Component</tt> of a node is created only when first
+ *              requested, and its entity is resolved from its key by a
+ *              function supplied by the caller. Every materialized node shares
+ *              a traverser materializing the children on demand, so the
+ *              traversal of a subtree creates that subtree only.
+ *              </p>
+ *              <p>
+ *              The file layout is: a header of 32 bytes (magic number,
+ *              version, number of nodes, number of child links, key of the
+ *              parent of the root), the keys, the sorted keys, the
+ *              coordinates, the positions of the sorted keys, the parents, the
+ *              child offsets, the children, and the kinds. A single mapping
+ *              holds at most 2 GB, i.e. about 25 million nodes.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x48474354; //!< "HGCT"
+    private static final int VERSION = 1; //!< version of the layout
+    private static final int HEADER = 32; //!< bytes of the header
+    private static final int COORDINATES = 4; //!< start x, start y, end x, end y
+
+    private final MappedByteBuffer buffer; //!< read-only mapping of the file
+    private final int size; //!< number of nodes
+    private final double rootParent; //!< key of the parent of the root
+    private final int ids; //!< offset of the keys
+    private final int sortedIds; //!< offset of the sorted keys
+    private final int coordinates; //!< offset of the coordinates
+    private final int sortedIndex; //!< offset of the index of each sorted key
+    private final int parents; //!< offset of the parents
+    private final int childOffsets; //!< offset of the child offsets
+    private final int children; //!< offset of the children
+    private final int kinds; //!< offset of the kinds
+    private final Function<? super Key, ? extends HydroGeoArea> entities; //!< resolver of the entities
+    private final AtomicReferenceArray<Component> materialized; //!< nodes created so far
+    private final TreeTraverser<Component> traverser; //!< traverser shared by the materialized nodes
+
+    /**
+     * @brief Constructor
+     *
+     * @param[in] buffer The mapping of the file
+     * @param[in] entities The resolver of the entities
+     * @exception IOException
+     *                if the file is not a snapshot
+     */
+    private TreeSnapshot(final MappedByteBuffer buffer, final Function<? super Key, ? extends HydroGeoArea> entities)
+        throws IOException {
+
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) throw new IOException("Not a tree snapshot");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+
+        this.buffer = buffer;
+        this.entities = entities;
+        size = buffer.getInt(8);
+        final int links = buffer.getInt(12);
+        rootParent = buffer.getDouble(16);
+
+        ids = HEADER;
+        sortedIds = ids + 8 * size;
+        coordinates = sortedIds + 8 * size;
+        sortedIndex = coordinates + 8 * COORDINATES * size;
+        parents = sortedIndex + 4 * size;
+        childOffsets = parents + 4 * size;
+        children = childOffsets + 4 * (size + 1);
+        kinds = children + 4 * links;
+        if (size <= 0 || links != size - 1 || buffer.capacity() != kinds + size)
+            throw new IOException("Corrupted tree snapshot");
+
+        materialized = new AtomicReferenceArray<Component>(size);
+        traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component node) {
+                return childrenOf(node);
+            }
+        };
+
+    }
+
+    /**
+     * @brief Write the snapshot of a tree
+     *
+     * @description The file is written aside and then atomically renamed, so
+     *              the JVMs opening it never see a partial snapshot.
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     * @param[in] file The file of the snapshot
+     * @exception IOException
+     *                if the file cannot be written
+     * @exception IllegalArgumentException
+     *                if the tree holds nodes of another type than
+     *                <tt>Node</tt>, <tt>GhostNode</tt>, <tt>LocalNode</tt>
+     *                and <tt>Leaf</tt>, or it is too large for a snapshot
+     */
+    public static void write(final Component root, final Path file) throws IOException {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+        if (file == null) throw new NullPointerException("File cannot be null."); // precondition
+
+        final FlatTree tree = root.subtree();
+        final int n = tree.size();
+        final long bytes = HEADER + (8L * 2 + 8L * COORDINATES + 4L * 2 + 1L) * n + 4L * (n + 1) + 4L * (n - 1);
+        if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("The tree is too large for a snapshot");
+
+        final ByteBuffer out = ByteBuffer.allocate((int) bytes);
+        out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(n - 1);
+        out.putDouble(root.getConnections().getPARENT().getDouble()).putLong(0L);
+
+        final double[] keys = new double[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = tree.component(i).getConnections().getID().getDouble();
+            out.putDouble(keys[i]);
+        }
+
+        final double[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (double key : sorted)
+            out.putDouble(key);
+
+        for (int i = 0; i < n; i++) {
+            final HydroGeoArea entity = tree.component(i).getEntity();
+            putPoint(out, (entity == null) ? null : entity.getStartPoint());
+            putPoint(out, (entity == null) ? null : entity.getEndPoint());
+        }
+
+        for (double key : sorted)
+            out.putInt(tree.indexOf(key));
+        for (int i = 0; i < n; i++)
+            out.putInt(tree.parent(i));
+
+        int offset = 0;
+        for (int i = 0; i < n; i++) {
+            out.putInt(offset);
+            offset += tree.childCount(i);
+        }
+        out.putInt(offset);
+        for (int i = 0; i < n; i++)
+            for (int k = 0; k < tree.childCount(i); k++)
+                out.putInt(tree.child(i, k));
+
+        for (int i = 0; i < n; i++) {
+            final TreeBuilder.Kind kind = TreeBuilder.Kind.of(tree.component(i));
+            if (kind == null) throw new IllegalArgumentException(tree.component(i) + " cannot be stored in a snapshot");
+            out.put((byte) kind.ordinal());
+        }
+
+        out.flip();
+        final Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), null, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining())
+                    channel.write(out);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+    }
+
+    /**
+     * @brief Open a snapshot
+     *
+     * @description The file is mapped read-only; no node is created yet.
+     *
+     * @param[in] file The file of the snapshot
+     * @param[in] entities The resolver of the entity of each node, which may
+     *            return <code>null</code>
+     * @return The snapshot
+     * @exception IOException
+     *                if the file cannot be mapped or is not a snapshot
+     */
+    public static TreeSnapshot open(final Path file, final Function<? super Key, ? extends HydroGeoArea> entities)
+        throws IOException {
+        if (file == null) throw new NullPointerException("File cannot be null."); // precondition
+        if (entities == null) throw new NullPointerException("Entity resolver cannot be null."); // precondition
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Not a tree snapshot");
+            return new TreeSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), entities);
+        }
+    }
+
+    /**
+     * @brief The number of nodes of the tree
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @brief The index of the root, i.e. the last node in postorder
+     *
+     * @return The index of the root
+     */
+    public int root() {
+        return size - 1;
+    }
+
+    /**
+     * @brief The value of the key of a node
+     *
+     * @param[in] index The index of the node
+     * @return The value of the key
+     */
+    public double id(final int index) {
+        return buffer.getDouble(ids + 8 * checked(index));
+    }
+
+    /**
+     * @brief The index of the node with the given key
+     *
+     * @param[in] id The value of the key
+     * @return The index of the node, -1 if no node has the key
+     */
+    public int indexOf(final double id) {
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = Double.compare(buffer.getDouble(sortedIds + 8 * middle), id);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return buffer.getInt(sortedIndex + 4 * middle);
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * @brief The parent of a node
+     *
+     * @param[in] index The index of the node
+     * @return The index of the parent, -1 for the root
+     */
+    public int parent(final int index) {
+        return buffer.getInt(parents + 4 * checked(index));
+    }
+
+    /**
+     * @brief The number of children of a node
+     *
+     * @param[in] index The index of the node
+     * @return The number of children
+     */
+    public int childCount(final int index) {
+        final int at = childOffsets + 4 * checked(index);
+        return buffer.getInt(at + 4) - buffer.getInt(at);
+    }
+
+    /**
+     * @brief A child of a node
+     *
+     * @param[in] index The index of the node
+     * @param[in] k The position of the child, in the order of
+     *            Connections#getChildren()
+     * @return The index of the child
+     */
+    public int child(final int index, final int k) {
+        if (k < 0 || k >= childCount(index)) throw new IndexOutOfBoundsException("Child " + k);
+        return buffer.getInt(children + 4 * (buffer.getInt(childOffsets + 4 * index) + k));
+    }
+
+    /**
+     * @brief The kind of a node
+     *
+     * @param[in] index The index of the node
+     * @return The kind of the node
+     */
+    public TreeBuilder.Kind kind(final int index) {
+        return TreeBuilder.Kind.values()[buffer.get(kinds + checked(index))];
+    }
+
+    /**
+     * @brief The <tt>x</tt> coordinate of the starting point of a node
+     *
+     * @param[in] index The index of the node
+     * @return The coordinate, NaN if the node had no starting point
+     */
+    public double startX(final int index) {
+        return coordinate(index, 0);
+    }
+
+    /**
+     * @brief The <tt>y</tt> coordinate of the starting point of a node
+     *
+     * @param[in] index The index of the node
+     * @return The coordinate, NaN if the node had no starting point
+     */
+    public double startY(final int index) {
+        return coordinate(index, 1);
+    }
+
+    /**
+     * @brief The <tt>x</tt> coordinate of the ending point of a node
+     *
+     * @param[in] index The index of the node
+     * @return The coordinate, NaN if the node had no ending point
+     */
+    public double endX(final int index) {
+        return coordinate(index, 2);
+    }
+
+    /**
+     * @brief The <tt>y</tt> coordinate of the ending point of a node
+     *
+     * @param[in] index The index of the node
+     * @return The coordinate, NaN if the node had no ending point
+     */
+    public double endY(final int index) {
+        return coordinate(index, 3);
+    }
+
+    /**
+     * @brief The root of the tree, materialized on demand
+     *
+     * @return The root
+     */
+    public Component getRoot() {
+        return component(root());
+    }
+
+    /**
+     * @brief The node with the given index, materialized on demand
+     *
+     * @description A node is created once; concurrent first requests may
+     *              both build it, but all of them return the same instance.
+     *
+     * @param[in] index The index of the node
+     * @return The node, whose traverser is set
+     */
+    public Component component(final int index) {
+
+        final Component existing = materialized.get(checked(index));
+        if (existing != null) return existing;
+
+        final Key[] childKeys = new Key[childCount(index)];
+        for (int k = 0; k < childKeys.length; k++)
+            childKeys[k] = new Key(id(child(index, k)));
+        final Key key = new Key(id(index));
+        final Key parentKey = new Key((parent(index) < 0) ? rootParent : id(parent(index)));
+
+        final Component created = kind(index).create(new Connections(key, parentKey, childKeys),
+                                                     entities.apply(key));
+        created.setTraverser(traverser);
+
+        return materialized.compareAndSet(index, null, created) ? created : materialized.get(index);
+
+    }
+
+    /**
+     * @brief The number of nodes materialized so far
+     *
+     * @return The number of nodes created
+     */
+    public int materializedCount() {
+
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (materialized.get(i) != null) count++;
+
+        return count;
+
+    }
+
+    /**
+     * @brief The children of a materialized node, materialized on demand
+     *
+     * @param[in] node The node
+     * @return The read-only list of the children
+     * @exception IllegalArgumentException
+     *                if the node does not belong to the snapshot
+     */
+    private List<Component> childrenOf(final Component node) {
+
+        final int index = indexOf(node.getConnections().getID().getDouble());
+        if (index < 0 || materialized.get(index) != node)
+            throw new IllegalArgumentException(node + " does not belong to the snapshot");
+
+        return new AbstractList<Component>() {
+            @Override
+            public Component get(final int k) {
+                return component(child(index, k));
+            }
+
+            @Override
+            public int size() {
+                return childCount(index);
+            }
+        };
+
+    }
+
+    /**
+     * @brief A coordinate of a node
+     *
+     * @param[in] index The index of the node
+     * @param[in] which The coordinate: start x, start y, end x or end y
+     * @return The coordinate
+     */
+    private double coordinate(final int index, final int which) {
+        return buffer.getDouble(coordinates + 8 * (COORDINATES * checked(index) + which));
+    }
+
+    /**
+     * @brief Check the index of a node
+     *
+     * @param[in] index The index of the node
+     * @return The index
+     * @exception IndexOutOfBoundsException
+     *                if no node has the index
+     */
+    private int checked(final int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Node " + index);
+        return index;
+    }
+
+    /**
+     * @brief Write the coordinates of a point
+     *
+     * @description The only place reading the coordinates of a
+     *              <tt>HydroGeoPoint</tt>.
+     *
+     * @param[in] out The destination
+     * @param[in] point The point, <code>null</code> for NaN coordinates
+     */
+    private static void putPoint(final ByteBuffer out, final HydroGeoPoint point) {
+        out.putDouble((point == null) ? Double.NaN : point.getX());
+        out.putDouble((point == null) ? Double.NaN : point.getY());
+    }
+
+}
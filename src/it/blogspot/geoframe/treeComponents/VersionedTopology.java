@@ -0,0 +1,437 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.key.Key;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * @brief class VersionedTopology
+ *
+ * @description Copy-on-write versions of the topology of a tree of
+ *              <tt>Component</tt>s, for a tree read while it is rewired, e.g.
+ *              a long-running simulation service localizing new measurement
+ *              points. A reader pins the current <tt>Version</tt> and uses its
+ *              root and flat tree without any lock: the nodes of a published
+ *              version are never rewired. A writer builds the next version
+ *              and publishes it with a single volatile write.
+ *              <p>
+ *              The next version shares every node whose subtree does not
+ *              change. Each rewired node, and each of its ancestors up to the
+ *              root, is replaced by a copy of the same kind, with the same
+ *              entity, kernel and last result, whose traverser belongs to the
+ *              version. The traverser of a shared node is the one of the
+ *              version which created it, and still describes its subtree, so
+ *              the traversals of any node of a version stay within that
+ *              version.
+ *              </p>
+ *              <p>
+ *              The nodes shared by two versions share their run state: the
+ *              simulation flags, the last result and the parent recorded for
+ *              Component#invalidateTopology(). The simulations of different
+ *              versions must therefore not overlap, which
+ *              VersionedTopology#beginSimulation() enforces: each step of the
+ *              service simulates the version current at its start, between
+ *              that call and VersionedTopology#endSimulation(final Version),
+ *              while the next version is prepared and published.
+ *              </p>
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+@ThreadSafe
+public class VersionedTopology {
+
+    private final ReentrantLock writer = new ReentrantLock(); //!< lock of the writers
+    @GuardedBy("writer") private volatile Version current; //!< last published version
+    private final Semaphore simulation = new Semaphore(1); //!< permit of the version being simulated
+    private final AtomicReference<Version> simulated
+        = new AtomicReference<Version>(); //!< version being simulated, null if none
+
+    /**
+     * @brief Constructor
+     *
+     * @description The first version is the tree as it is, with its own
+     *              nodes; it must not be rewired in place afterwards.
+     *
+     * @param[in] root The root of the tree, whose traverser must have been set
+     */
+    public VersionedTopology(final Component root) {
+        if (root == null) throw new NullPointerException("Root cannot be null."); // precondition
+
+        current = new Version(0L, root, root.subtree());
+    }
+
+    /**
+     * @brief The last published version
+     *
+     * @return The version, which never changes
+     */
+    public Version current() {
+        return current;
+    }
+
+    /**
+     * @brief Pin the last published version for a simulation
+     *
+     * @description It waits for the end of the simulation of any other
+     *              version, since the nodes shared by two versions cannot run
+     *              two simulations at once. The nodes of the returned version
+     *              record their parents in it again, so the shared ones no
+     *              longer refer to the nodes of an older version.
+     *
+     * @return The version to simulate, to be released by
+     *         VersionedTopology#endSimulation(final Version)
+     * @exception InterruptedException
+     *                if the calling thread is interrupted while waiting
+     */
+    public Version beginSimulation() throws InterruptedException {
+        simulation.acquire();
+
+        final Version version = current;
+        Component.recordParents(version.getTree());
+        simulated.set(version);
+        return version;
+    }
+
+    /**
+     * @brief Release the version of a simulation
+     *
+     * @param[in] version The version returned by
+     *            VersionedTopology#beginSimulation()
+     * @exception IllegalStateException
+     *                if the version is not being simulated
+     */
+    public void endSimulation(final Version version) {
+        if (version == null) throw new NullPointerException("Version cannot be null."); // precondition
+        if (!simulated.compareAndSet(version, null)) // precondition
+            throw new IllegalStateException(version + " is not being simulated");
+
+        simulation.release();
+    }
+
+    /**
+     * @brief Create a batch of local nodes for the next version
+     *
+     * @return An empty batch, to be published by
+     *         VersionedTopology#publish(final LocalNodeBatch): its
+     *         LocalNodeBatch#apply() refuses to rewire the published nodes
+     */
+    public LocalNodeBatch newBatch() {
+        return new LocalNodeBatch(current.getRoot(), false);
+    }
+
+    /**
+     * @brief Publish a version with the local nodes of a batch
+     *
+     * @description The batch is localized on the version current when the
+     *              writer lock is acquired, whatever the root it was created
+     *              with, and it is empty afterwards.
+     *
+     * @param[in] batch The batch of local nodes
+     * @return The published version
+     * @exception IllegalArgumentException
+     *                listing the problems of the batch
+     */
+    public Version publish(final LocalNodeBatch batch) {
+        if (batch == null) throw new NullPointerException("Batch cannot be null."); // precondition
+
+        writer.lock();
+        try {
+            final LocalNodeBatch.Rewiring rewiring = batch.plan(current.getRoot());
+            final Version next = derive(rewiring, rewiring.changes, rewiring.inserted);
+            batch.clear();
+            return next;
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * @brief Publish a version with new connections and new nodes
+     *
+     * @param[in] changes The new connections of nodes of the current version,
+     *            identified by their keys
+     * @param[in] added The new nodes, not part of any version
+     * @return The published version
+     * @exception IllegalArgumentException
+     *                if a changed node is not in the current version or the
+     *                result is not a single tree
+     */
+    public Version publish(final Collection<Connections> changes, final Collection<? extends Component> added) {
+        if (changes == null) throw new NullPointerException("Changes cannot be null."); // precondition
+        if (added == null) throw new NullPointerException("Added nodes cannot be null."); // precondition
+
+        writer.lock();
+        try {
+            final FlatTree tree = current.getTree();
+            final IdentityHashMap<Component, Connections> rewired = new IdentityHashMap<Component, Connections>();
+            for (Connections connKeys : changes) {
+                final int index = tree.indexOf(connKeys.getID());
+                if (index < 0) throw new IllegalArgumentException("No node with key " + connKeys.getID());
+                rewired.put(tree.component(index), connKeys);
+            }
+            return derive(null, rewired, added);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * @brief Build and publish the next version
+     *
+     * @param[in] rewiring The rewiring of a batch, whose local nodes get
+     *            their planned connections once the version is validated,
+     *            <code>null</code> if the new nodes are already connected
+     * @param[in] changes The new connections of nodes of the current version
+     * @param[in] added The new nodes
+     * @return The published version
+     * @exception IllegalArgumentException
+     *                if the result is not a single tree
+     */
+    @GuardedBy("writer")
+    private Version derive(final LocalNodeBatch.Rewiring rewiring, final Map<Component, Connections> changes,
+                           final Collection<? extends Component> added) {
+
+        final FlatTree tree = current.getTree();
+        final int n = tree.size();
+        if (changes.size() != countChanged(tree, changes))
+            throw new IllegalArgumentException("A changed node is not in the current version");
+
+        final ArrayList<Component> nodes = new ArrayList<Component>(n + added.size());
+        for (int i = 0; i < n; i++)
+            nodes.add(tree.component(i));
+        nodes.addAll(added);
+
+        final int size = nodes.size();
+        final Connections[] connections = new Connections[size];
+        final DoubleIntHashMap index = new DoubleIntHashMap(size);
+        for (int i = 0; i < size; i++) {
+            final Connections changed = (i < n) ? changes.get(nodes.get(i))
+                                                : (rewiring == null) ? null : rewiring.pending.get(nodes.get(i));
+            connections[i] = (changed == null) ? nodes.get(i).getConnections() : changed;
+            if (index.put(connections[i].getID().getDouble(), i) != DoubleIntHashMap.MISSING)
+                throw new IllegalArgumentException("Duplicated node " + connections[i].getID());
+        }
+
+        // every node but the root is listed once, so no cycle is reachable from the root
+        final int root = tree.root();
+        final int[] parentOf = new int[size];
+        Arrays.fill(parentOf, -1);
+        final int[][] childrenOf = new int[size][];
+        for (int i = 0; i < size; i++) {
+            final List<Integer> children = new ArrayList<Integer>();
+            for (Key childKey : connections[i].getChildren()) {
+                if (childKey == null) continue;
+                final int child = index.get(childKey.getDouble());
+                if (child == DoubleIntHashMap.MISSING)
+                    throw new IllegalArgumentException("Child " + childKey + " of " + connections[i].getID()
+                                                       + " is not in the tree");
+                if (parentOf[child] >= 0 || child == root)
+                    throw new IllegalArgumentException(childKey + " is listed more than once among the children");
+                parentOf[child] = i;
+                children.add(child);
+            }
+            childrenOf[i] = new int[children.size()];
+            for (int k = 0; k < childrenOf[i].length; k++)
+                childrenOf[i][k] = children.get(k);
+        }
+
+        // depth-first count of the nodes connected with the root
+        int connected = 0;
+        final int[] stack = new int[size];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            final int i = stack[--top];
+            connected++;
+            for (int child : childrenOf[i])
+                stack[top++] = child;
+        }
+        if (connected != size)
+            throw new IllegalArgumentException((size - connected) + " nodes are not connected with the root");
+
+        // a rewired or new node changes the subtree of every ancestor, which is copied as well
+        final boolean[] fresh = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (i < n && !changes.containsKey(nodes.get(i))) continue;
+            for (int j = i; j >= 0 && !fresh[j]; j = parentOf[j])
+                fresh[j] = true;
+        }
+        fresh[root] = true;
+        for (int i = 0; i < n; i++)
+            if (fresh[i]) nodes.set(i, copyOf(nodes.get(i), connections[i]));
+
+        final IdentityHashMap<Component, List<Component>> links
+            = new IdentityHashMap<Component, List<Component>>(size);
+        for (int i = 0; i < size; i++) {
+            final ArrayList<Component> children = new ArrayList<Component>(childrenOf[i].length);
+            for (int child : childrenOf[i])
+                children.add(nodes.get(child));
+            links.put(nodes.get(i), Collections.unmodifiableList(children));
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component node) {
+                return links.get(node);
+            }
+        };
+        // the version is valid: the local nodes of the caller can be connected
+        if (rewiring != null) rewiring.connectInserted();
+        for (int i = 0; i < size; i++)
+            if (fresh[i]) nodes.get(i).setTraverser(traverser);
+
+        final FlatTree next = nodes.get(root).subtree();
+
+        final Version version = new Version(current.getVersion() + 1, nodes.get(root), next);
+        current = version;
+        return version;
+
+    }
+
+    /**
+     * @brief The number of changed nodes found in a tree
+     *
+     * @param[in] tree The current tree
+     * @param[in] changes The new connections of the changed nodes
+     * @return The number of changed nodes which are nodes of the tree
+     */
+    private static int countChanged(final FlatTree tree, final Map<Component, Connections> changes) {
+
+        int count = 0;
+        for (Component node : changes.keySet()) {
+            final int index = tree.indexOf(node.getConnections().getID());
+            if (index >= 0 && tree.component(index) == node) count++;
+        }
+
+        return count;
+
+    }
+
+    /**
+     * @brief Copy a node with new connections
+     *
+     * @param[in] node The node
+     * @param[in] connKeys The connections of the copy
+     * @return A node of the same kind, with the same entity, kernel and last
+     *         result
+     * @exception IllegalArgumentException
+     *                if the node is not one of the four kinds of the tree
+     */
+    private static Component copyOf(final Component node, final Connections connKeys) {
+
+        final TreeBuilder.Kind kind = TreeBuilder.Kind.of(node);
+        if (kind == null) throw new IllegalArgumentException(node + " cannot be copied into a new version");
+
+        final Component copy = kind.create(connKeys, node.getEntity());
+        copy.setKernel(node.getKernel());
+        copy.restoreSimulationResult(node.getSimulationResult());
+
+        return copy;
+
+    }
+
+    /**
+     * @brief class Version
+     *
+     * @description Immutable version of the topology: its root, whose
+     *              traversals and Component#subtree() give the nodes of the
+     *              version, and the flat tree built when it was published.
+     */
+    @Immutable
+    public static final class Version {
+
+        private final long version; //!< number of the version, 0 for the first one
+        private final Component root; //!< root of the version
+        private final FlatTree tree; //!< flat tree of the version
+
+        private Version(final long version, final Component root, final FlatTree tree) {
+            this.version = version;
+            this.root = root;
+            this.tree = tree;
+        }
+
+        /**
+         * @brief The number of the version
+         *
+         * @return The number, increasing by one at each publication
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @brief The root of the version
+         *
+         * @return The root, to be handed to the traversals, and to the
+         *         schedulers while the version is pinned by
+         *         VersionedTopology#beginSimulation()
+         */
+        public Component getRoot() {
+            return root;
+        }
+
+        /**
+         * @brief The flat tree of the version
+         *
+         * @return The flat tree
+         */
+        public FlatTree getTree() {
+            return tree;
+        }
+
+        /**
+         * @brief Simply overriding of the <code>toString</code> method
+         *
+         * @return The state variables of the object
+         */
+        @Override
+        public String toString() {
+
+            String tmp = this.getClass().getSimpleName();
+            tmp += "  ==> ";
+            tmp += version + ", " + tree.size() + " nodes";
+
+            return tmp;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class DirectoryTransportTest
+ *
+ * @description Tests of the <tt>DirectoryTransport</tt>: the results are
+ *              received in the order they are sent, also when the sender or
+ *              the receiver is restarted, i.e. replaced by a new instance on
+ *              the same directory.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class DirectoryTransportTest {
+
+    private static final Key OUTLET = new Key(4.0); //!< outlet of the results
+    private static final long POLL_MILLIS = 1L; //!< interval of the receivers
+    private static final long TIMEOUT_MILLIS = 2000L; //!< longest wait of the receivers
+
+    private Path directory; //!< shared directory
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("transport");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Path file : Files.newDirectoryStream(directory))
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void resultsAreReceivedInOrder() throws Exception {
+
+        final DirectoryTransport sender = transport();
+        final DirectoryTransport receiver = transport();
+        for (int run = 0; run < 5; run++)
+            sender.send(OUTLET, "run " + run);
+        for (int run = 0; run < 5; run++)
+            assertEquals("run " + run, receiver.receive(OUTLET));
+
+    }
+
+    @Test
+    public void restartedSenderContinuesTheSequence() throws Exception {
+
+        final DirectoryTransport receiver = transport();
+        transport().send(OUTLET, "first");
+        assertEquals("first", receiver.receive(OUTLET));
+
+        transport().send(OUTLET, "second");
+        assertEquals("second", receiver.receive(OUTLET));
+
+    }
+
+    @Test
+    public void restartedSenderQueuesAfterTheUnreadResults() throws Exception {
+
+        transport().send(OUTLET, "first");
+        transport().send(OUTLET, "second");
+
+        final DirectoryTransport receiver = transport();
+        assertEquals("first", receiver.receive(OUTLET));
+        assertEquals("second", receiver.receive(OUTLET));
+
+    }
+
+    @Test
+    public void restartedReceiverContinuesTheSequence() throws Exception {
+
+        final DirectoryTransport sender = transport();
+        sender.send(OUTLET, "first");
+        sender.send(OUTLET, "second");
+        assertEquals("first", transport().receive(OUTLET));
+        assertEquals("second", transport().receive(OUTLET));
+
+        sender.send(OUTLET, "third");
+        assertEquals("third", transport().receive(OUTLET));
+
+    }
+
+    /**
+     * @brief A new transport on the shared directory, as created by a
+     *        restarted process
+     *
+     * @return The transport
+     */
+    private DirectoryTransport transport() {
+        return new DirectoryTransport(directory, POLL_MILLIS, TIMEOUT_MILLIS);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class EnsembleStateTest
+ *
+ * @description Tests of the <tt>EnsembleState</tt>: a state is equal to its
+ *              serialized copy, also after a trip through a
+ *              <tt>DirectoryTransport</tt>, and different from the states
+ *              of another shape or with other values.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class EnsembleStateTest {
+
+    @Test
+    public void serializedCopyIsEqual() throws Exception {
+
+        final EnsembleState state = sample();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        final Object copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = in.readObject();
+        }
+
+        assertNotSame(state, copy);
+        assertEquals(state, copy);
+        assertEquals(state.hashCode(), copy.hashCode());
+
+    }
+
+    @Test
+    public void otherShapesAndValuesAreNotEqual() {
+
+        final EnsembleState state = sample();
+        assertFalse(state.equals(new EnsembleState(3, 2)));
+        assertFalse(state.equals(new EnsembleState(2, 3)));
+
+        final EnsembleState other = sample();
+        other.set(1, 2, -1.0);
+        assertFalse(state.equals(other));
+
+    }
+
+    @Test
+    public void stateTravelsThroughADirectoryTransport() throws Exception {
+
+        final Path directory = Files.createTempDirectory("ensemble");
+        try {
+            final DirectoryTransport transport = new DirectoryTransport(directory, 1L, 1000L);
+            transport.send(new Key(2.0), sample());
+            assertEquals(sample(), transport.receive(new Key(2.0)));
+        } finally {
+            for (Path file : Files.newDirectoryStream(directory))
+                Files.delete(file);
+            Files.delete(directory);
+        }
+
+    }
+
+    /**
+     * @brief A state of 3 members and 2 variables with distinct values
+     *
+     * @return The state
+     */
+    private static EnsembleState sample() {
+        final EnsembleState state = new EnsembleState(3, 2);
+        for (int v = 0; v < 2; v++)
+            for (int m = 0; m < 3; m++)
+                state.set(v, m, v * 10.0 + m);
+        return state;
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class ForkJoinSchedulerTest
+ *
+ * @description Tests of the <tt>ForkJoinScheduler</tt>: whatever the
+ *              sequential threshold, every node receives the results of its
+ *              children, and the result of the root is returned.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class ForkJoinSchedulerTest {
+
+    private ForkJoinPool pool; //!< pool of the scheduler
+
+    @Before
+    public void startThreads() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void syntheticBasinsHaveTheSequentialResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+            final Object result = new ForkJoinScheduler(root, pool, 16).run();
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+            assertEquals(shape.toString(), root.getSimulationResult(), result);
+        }
+
+    }
+
+    @Test
+    public void everyThresholdHasTheSequentialResults() throws Exception {
+
+        for (int threshold : new int[] { 1, 2, 3, 6, 1000 }) {
+            final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+            new ForkJoinScheduler(root, pool, threshold).run();
+            ReferenceSimulation.assertSequentialResults("threshold " + threshold, root);
+        }
+
+    }
+
+    @Test
+    public void failureAbortsTheRun() throws Exception {
+
+        final SimulationKernel<Long> failing = new SimulationKernel<Long>() {
+            public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+                if (connKeys.getID().getDouble() == 6.0) throw new IllegalStateException("Failure of the node 6");
+                return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+            }
+        };
+
+        final Component root = ReferenceSimulation.sampleTree(failing);
+        try {
+            new ForkJoinScheduler(root, pool, 1).run();
+            fail("The failure of the node 6 was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+    }
+
+}
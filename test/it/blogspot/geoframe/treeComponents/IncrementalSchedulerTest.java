@@ -0,0 +1,142 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class IncrementalSchedulerTest
+ *
+ * @description Tests of the <tt>IncrementalScheduler</tt>: a node marked as
+ *              stale is simulated again with its ancestors only, and the
+ *              results are the ones of a full simulation.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class IncrementalSchedulerTest {
+
+    @Test
+    public void syntheticBasinsHaveTheSequentialResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Counter counter = new Counter();
+            final Component root = ReferenceSimulation.basin(shape, counter);
+            final IncrementalScheduler scheduler = new IncrementalScheduler(root);
+            scheduler.run();
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+            assertEquals(root.subtree().size(), counter.calls.get());
+
+            // a node made stale is simulated again with its ancestors, giving the same results
+            final FlatTree tree = root.subtree();
+            scheduler.markStale(tree.component(tree.size() / 2).getConnections().getID());
+            final int stale = scheduler.getStaleCount();
+            assertTrue(stale > 0);
+
+            counter.calls.set(0);
+            scheduler.run();
+            assertEquals(stale, counter.calls.get());
+            assertEquals(0, scheduler.getStaleCount());
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+        }
+
+    }
+
+    @Test
+    public void staleLeafMarksItsAncestors() {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        final IncrementalScheduler scheduler = new IncrementalScheduler(root);
+        scheduler.run();
+
+        scheduler.markStale(new Key(5.0));
+        assertEquals(3, scheduler.getStaleCount());
+        assertTrue(scheduler.isStale(new Key(5.0)));
+        assertTrue(scheduler.isStale(new Key(2.0)));
+        assertTrue(scheduler.isStale(new Key(1.0)));
+        assertFalse(scheduler.isStale(new Key(4.0)));
+        assertFalse(scheduler.isStale(new Key(3.0)));
+
+    }
+
+    @Test
+    public void changedInputGivesTheResultOfAFullRun() {
+
+        final Input input = new Input();
+        final Component root = ReferenceSimulation.sampleTree(input);
+        final IncrementalScheduler scheduler = new IncrementalScheduler(root);
+        scheduler.run();
+
+        input.leaf6 = 42L;
+        scheduler.markStale(new Key(6.0));
+        final Object incremental = scheduler.run();
+
+        final Component full = ReferenceSimulation.sampleTree(input);
+        assertEquals(new IncrementalScheduler(full).run(), incremental);
+        assertEquals(full.getSimulationResult(), root.getSimulationResult());
+
+    }
+
+    /**
+     * @brief class Counter
+     *
+     * @description Ordered sum counting its calls.
+     */
+    private static final class Counter implements SimulationKernel<Long> {
+
+        private final AtomicInteger calls = new AtomicInteger(); //!< calls so far
+
+        public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+            calls.incrementAndGet();
+            return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+        }
+
+    }
+
+    /**
+     * @brief class Input
+     *
+     * @description Ordered sum with an input added to the result of the leaf
+     *              6, which the tests change between two runs.
+     */
+    private static final class Input implements SimulationKernel<Long> {
+
+        private volatile long leaf6; //!< input of the leaf 6
+
+        public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+            final long result = ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+            return (connKeys.getID().getDouble() == 6.0) ? result + leaf6 : result;
+        }
+
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class PendingChildrenTest
+ *
+ * @description Tests of the lock-free simulation flags: a node is reported
+ *              ready exactly once per run, whatever the interleaving of the
+ *              notifications, and each child keeps a single result, visible
+ *              to the caller finding the node ready.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class PendingChildrenTest {
+
+    private static final int CHILDREN = 8; //!< children of the tested node
+    private static final int THREADS = 4; //!< threads notifying concurrently
+    private static final int RUNS = 2000; //!< runs separated by a reset
+
+    private ExecutorService threads; //!< threads of the notifications
+
+    @Before
+    public void startThreads() {
+        threads = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        threads.shutdownNow();
+        threads.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void lastNotificationMakesTheNodeReady() {
+
+        final PendingChildren flags = new PendingChildren(connections(CHILDREN));
+        for (int c = 0; c < CHILDREN - 1; c++)
+            assertFalse(flags.arrive(childKey(c), c));
+        assertFalse(flags.isComplete());
+        assertTrue(flags.arrive(childKey(CHILDREN - 1), CHILDREN - 1));
+        assertTrue(flags.isComplete());
+
+        for (int c = 0; c < CHILDREN; c++)
+            assertEquals(c, flags.results().get(c));
+
+        flags.reset();
+        assertFalse(flags.isComplete());
+        assertNull(flags.results().get(0));
+
+    }
+
+    @Test
+    public void repeatedAndUnknownNotificationsAreIgnored() {
+
+        final PendingChildren flags = new PendingChildren(connections(2));
+        assertFalse(flags.arrive(childKey(0), "first"));
+        assertFalse(flags.arrive(childKey(0), "second"));
+        assertFalse(flags.arrive(new Key(99.0), "unknown"));
+        assertFalse(flags.isComplete());
+        assertTrue(flags.arrive(childKey(1), "last"));
+        assertFalse(flags.arrive(childKey(1), "again"));
+        assertEquals("last", flags.results().get(1));
+
+    }
+
+    @Test
+    public void nullResultIsKept() {
+
+        final PendingChildren flags = new PendingChildren(connections(2));
+        assertFalse(flags.arrive(childKey(0), null));
+        assertFalse(flags.arrive(childKey(0), "second"));
+        assertTrue(flags.arrive(childKey(1), "last"));
+        assertNull(flags.results().get(0));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyChildrenAreRejected() {
+        new PendingChildren(connections(Integer.SIZE));
+    }
+
+    @Test
+    public void concurrentNotificationsMakeTheNodeReadyOncePerRun() throws Exception {
+
+        final PendingChildren flags = new PendingChildren(connections(CHILDREN));
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        for (int run = 0; run < RUNS; run++) {
+            flags.reset();
+            assertFalse(flags.isComplete());
+
+            // every thread notifies every child, each with its own result
+            final List<Future<Integer>> ready = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                ready.add(threads.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        start.await();
+                        int count = 0;
+                        for (int k = 0; k < CHILDREN; k++) {
+                            final int c = (k + thread) % CHILDREN;
+                            if (flags.arrive(childKey(c), result(thread, c))) count++;
+                        }
+                        return count;
+                    }
+                }));
+            }
+
+            int count = 0;
+            for (Future<Integer> f : ready)
+                count += f.get();
+            assertEquals("ready notifications in run " + run, 1, count);
+            assertTrue(flags.isComplete());
+
+            for (int c = 0; c < CHILDREN; c++) {
+                final Object result = flags.results().get(c);
+                boolean fromAThread = false;
+                for (int t = 0; t < THREADS; t++)
+                    fromAThread |= result(t, c).equals(result);
+                assertTrue("result " + result + " of child " + c, fromAThread);
+            }
+        }
+
+    }
+
+    @Test
+    public void duplicatedNotificationsClaimTheResultOnce() throws Exception {
+
+        final PendingChildren flags = new PendingChildren(connections(1));
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        for (int run = 0; run < RUNS; run++) {
+            flags.reset();
+
+            final List<Future<Boolean>> ready = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                ready.add(threads.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        start.await();
+                        return flags.arrive(childKey(0), result(thread, 0));
+                    }
+                }));
+            }
+
+            // the single child: the notification claiming its slot is the one making the node ready
+            int winner = -1;
+            for (int t = 0; t < THREADS; t++)
+                if (ready.get(t).get()) {
+                    assertEquals("ready notifications in run " + run, -1, winner);
+                    winner = t;
+                }
+            assertTrue(winner >= 0);
+            assertEquals(result(winner, 0), flags.results().get(0));
+        }
+
+    }
+
+    /**
+     * @brief The connections of a node with some children
+     *
+     * @param[in] children The number of children
+     * @return The connections of the node 1, whose children are 2, 3, ...
+     */
+    private static Connections connections(final int children) {
+
+        final Key[] keys = new Key[children];
+        for (int c = 0; c < children; c++)
+            keys[c] = childKey(c);
+
+        return new Connections(new Key(1.0), new Key(0.0), keys);
+
+    }
+
+    /**
+     * @brief The key of a child
+     *
+     * @param[in] c The index of the child
+     * @return The key
+     */
+    private static Key childKey(final int c) {
+        return new Key(c + 2.0);
+    }
+
+    /**
+     * @brief The result notified by a thread for a child
+     *
+     * @param[in] thread The index of the thread
+     * @param[in] c The index of the child
+     * @return A result unique to the pair
+     */
+    private static String result(final int thread, final int c) {
+        return thread + ":" + c;
+    }
+
+}
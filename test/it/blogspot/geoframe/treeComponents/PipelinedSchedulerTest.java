@@ -0,0 +1,226 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class PipelinedSchedulerTest
+ *
+ * @description Tests of the <tt>PipelinedScheduler</tt>: at every step each
+ *              node receives the results of its children for the same step,
+ *              and the outlet receives the result of the root step after
+ *              step.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class PipelinedSchedulerTest {
+
+    private static final int STEPS = 20; //!< steps of the runs
+
+    private ExecutorService executor; //!< threads of the scheduler
+
+    @Before
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void everyStepHasTheSequentialResults() throws Exception {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        final Outlet outlet = new Outlet();
+        new PipelinedScheduler(root, executor, 2).run(STEPS, outlet);
+
+        ReferenceSimulation.assertSequentialResults("pipelined", root);
+        assertEquals(STEPS, outlet.results.size());
+        for (int step = 0; step < STEPS; step++) {
+            assertEquals(Integer.valueOf(step), outlet.steps.get(step));
+            assertEquals(root.getSimulationResult(), outlet.results.get(step));
+        }
+
+    }
+
+    @Test
+    public void syntheticBasinsHaveTheSequentialResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+            final Outlet outlet = new Outlet();
+            new PipelinedScheduler(root, executor, 4).run(3, outlet);
+
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+            assertEquals(shape.toString(), root.getSimulationResult(), outlet.results.get(2));
+        }
+
+    }
+
+    @Test
+    public void singleThreadRunsThePipeline() throws Exception {
+
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+            final Outlet outlet = new Outlet();
+            new PipelinedScheduler(root, single, 1).run(STEPS, outlet);
+
+            ReferenceSimulation.assertSequentialResults("single thread", root);
+            assertEquals(STEPS, outlet.results.size());
+        } finally {
+            single.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void stepKernelsReceiveTheirStep() throws Exception {
+
+        final ConcurrentHashMap<Double, List<Integer>> steps = new ConcurrentHashMap<Double, List<Integer>>();
+        final StepKernel<Long> recorder = new StepKernel<Long>() {
+            public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream,
+                                 final int step) {
+                final List<Integer> node = Collections.synchronizedList(new ArrayList<Integer>());
+                final List<Integer> previous = steps.putIfAbsent(connKeys.getID().getDouble(), node);
+                ((previous == null) ? node : previous).add(step);
+                return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+            }
+        };
+
+        final Component root = ReferenceSimulation.sampleTree(recorder);
+        new PipelinedScheduler(root, executor, 2).run(STEPS, null);
+
+        ReferenceSimulation.assertSequentialResults("stepped", root);
+        assertEquals(root.subtree().size(), steps.size());
+        for (List<Integer> node : steps.values()) {
+            assertEquals(STEPS, node.size());
+            for (int step = 0; step < STEPS; step++)
+                assertEquals(Integer.valueOf(step), node.get(step));
+        }
+
+    }
+
+    @Test
+    public void failureAbortsTheRun() throws Exception {
+
+        final SimulationKernel<Long> failing = new SimulationKernel<Long>() {
+            public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+                if (connKeys.getID().getDouble() == 5.0) throw new IllegalStateException("Failure of the node 5");
+                return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+            }
+        };
+
+        final Component root = ReferenceSimulation.sampleTree(failing);
+        try {
+            new PipelinedScheduler(root, executor, 2).run(STEPS, null);
+            fail("The failure of the node 5 was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+    }
+
+    @Test(timeout = 10000L)
+    public void rejectedTaskAbortsTheRun() throws Exception {
+
+        final ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        try {
+            new PipelinedScheduler(root, stopped, 2).run(STEPS, null);
+            fail("The rejection of the executor was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+    }
+
+    @Test(timeout = 10000L)
+    public void rejectionDuringTheRunAbortsIt() throws Exception {
+
+        // the executor accepts the first tasks only, then rejects the rescheduling of the nodes
+        final Executor limited = new Executor() {
+            private final AtomicInteger accepted = new AtomicInteger();
+
+            public void execute(final Runnable task) {
+                if (accepted.incrementAndGet() > 4) throw new RejectedExecutionException("Executor full");
+                executor.execute(task);
+            }
+        };
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        try {
+            new PipelinedScheduler(root, limited, 2).run(STEPS, null);
+            fail("The rejection of the executor was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+    }
+
+    /**
+     * @brief class Outlet
+     *
+     * @description Consumer recording the results of the root and their
+     *              steps.
+     */
+    private static final class Outlet implements ObjIntConsumer<Object> {
+
+        private final List<Object> results = Collections.synchronizedList(new ArrayList<Object>()); //!< results of the root
+        private final List<Integer> steps = Collections.synchronizedList(new ArrayList<Integer>()); //!< their steps
+
+        public void accept(final Object result, final int step) {
+            results.add(result);
+            steps.add(step);
+        }
+
+    }
+
+}
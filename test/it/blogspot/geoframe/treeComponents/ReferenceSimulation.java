@@ -0,0 +1,175 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.google.common.collect.TreeTraverser;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class ReferenceSimulation
+ *
+ * @description Reference of the tests of the schedulers: a kernel whose
+ *              result depends on the key of the node and on the results of
+ *              its children in their order, and a sequential postorder
+ *              simulation of the same kernel. A scheduler handing each node
+ *              the results of its children gives the same result on every
+ *              node.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+final class ReferenceSimulation {
+
+    /**
+     * @brief Kernel whose result depends on the key of the node and on the
+     *        results of the children, in their order
+     */
+    static final SimulationKernel<Long> ORDERED_SUM = new SimulationKernel<Long>() {
+        public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+            long result = Double.doubleToLongBits(connKeys.getID().getDouble());
+            for (int k = 0; k < upstream.size(); k++)
+                result = 31 * result + (k + 1) * upstream.get(k);
+            return result;
+        }
+    };
+
+    private static final int BASIN_SIZE = 1001; //!< nodes of the synthetic basins before decoration
+    private static final long BASIN_SEED = 7L; //!< seed of the synthetic basins
+
+    private ReferenceSimulation() {}
+
+    /**
+     * @brief A small tree with every kind of node
+     *
+     * @description The root 1 has the children 2 and 3, the ghost node 2 has
+     *              the leaves 4 and 5, the local node 3 has the leaf 6. The
+     *              entities are <code>null</code>.
+     *
+     * @param[in] kernel The kernel of every node
+     * @return The root of the tree
+     */
+    static Component sampleTree(final SimulationKernel<?> kernel) {
+
+        final Component[] nodes = new Component[] {
+            new Node(connections(1, 0, 2, 3), null),
+            new GhostNode(connections(2, 1, 4, 5), null),
+            new LocalNode(connections(3, 1, 6), null),
+            new Leaf(connections(4, 2), null),
+            new Leaf(connections(5, 2), null),
+            new Leaf(connections(6, 3), null)
+        };
+        final int[][] children = new int[][] { { 1, 2 }, { 3, 4 }, { 5 }, {}, {}, {} };
+
+        final IdentityHashMap<Component, List<Component>> links = new IdentityHashMap<Component, List<Component>>();
+        for (int i = 0; i < nodes.length; i++) {
+            final Component[] list = new Component[children[i].length];
+            for (int k = 0; k < list.length; k++)
+                list[k] = nodes[children[i][k]];
+            links.put(nodes[i], Arrays.asList(list));
+        }
+
+        final TreeTraverser<Component> traverser = new TreeTraverser<Component>() {
+            @Override
+            public Iterable<Component> children(final Component root) {
+                return links.get(root);
+            }
+        };
+        for (Component node : nodes) {
+            node.setTraverser(traverser);
+            node.setKernel(kernel);
+        }
+
+        return nodes[0];
+
+    }
+
+    /**
+     * @brief A synthetic basin of the benchmarks
+     *
+     * @param[in] shape The shape of the basin
+     * @param[in] kernel The kernel of every node
+     * @return The root of the basin
+     */
+    static Component basin(final SyntheticBasin.Shape shape, final SimulationKernel<?> kernel) {
+
+        final Component root = new SyntheticBasin(shape, BASIN_SIZE, 0.1, 0.05, BASIN_SEED).build();
+        for (Component node : root.preOrderTraversal())
+            node.setKernel(kernel);
+
+        return root;
+
+    }
+
+    /**
+     * @brief Check the result of every node against a sequential postorder
+     *        simulation of the ordered sum
+     *
+     * @param[in] message The prefix of the failure messages
+     * @param[in] root The root of the simulated tree
+     */
+    static void assertSequentialResults(final String message, final Component root) {
+
+        final HashMap<Key, Long> expected = new HashMap<Key, Long>();
+
+        // in postorder the children come before their parent
+        for (Component node : root.postOrderTraversal()) {
+            final Connections connKeys = node.getConnections();
+            final List<Long> upstream = new ArrayList<Long>();
+            for (Key child : connKeys.getChildren())
+                upstream.add(expected.get(child));
+            expected.put(connKeys.getID(), ORDERED_SUM.simulate(connKeys, node.getEntity(), upstream));
+
+            assertEquals(message + " node " + connKeys.getID().getDouble(),
+                         expected.get(connKeys.getID()), node.getSimulationResult());
+        }
+
+    }
+
+    /**
+     * @brief The connections of a node
+     *
+     * @param[in] id The ID of the node
+     * @param[in] parent The ID of the parent, 0 for the root
+     * @param[in] children The IDs of the children, none for a leaf
+     * @return The connections
+     */
+    private static Connections connections(final double id, final double parent, final double... children) {
+
+        final Key[] keys = new Key[children.length];
+        for (int k = 0; k < keys.length; k++)
+            keys[k] = new Key(children[k]);
+
+        return new Connections(new Key(id), new Key(parent), keys);
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class ResultCacheTest
+ *
+ * @description Tests of the <tt>ResultCache</tt>: a result is reused only
+ *              while its upstream results are the ones it was computed from,
+ *              also for results without value equality which went through
+ *              the spill directory.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class ResultCacheTest {
+
+    private static final Connections LEAF_4 = new Connections(new Key(4.0), new Key(2.0)); //!< first leaf
+    private static final Connections LEAF_5 = new Connections(new Key(5.0), new Key(2.0)); //!< second leaf
+    private static final Connections NODE_2 = new Connections(new Key(2.0), new Key(1.0),
+                                                              new Key(4.0), new Key(5.0)); //!< their parent
+
+    private static final LongSupplier FIRST_WINDOW = new LongSupplier() {
+        public long getAsLong() {
+            return 0L;
+        }
+    }; //!< the only time window
+
+    private static final ToLongFunction<Object> UNIT = new ToLongFunction<Object>() {
+        public long applyAsLong(final Object result) {
+            return 1L;
+        }
+    }; //!< every result weighs 1
+
+    private Path directory; //!< spill directory
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("spills");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Path file : Files.newDirectoryStream(directory))
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void resultsAreReusedWhileTheirUpstreamIsUnchanged() {
+
+        final Sum sum = new Sum();
+        final ResultCache cache = new ResultCache(10L, ResultCache.Policy.LRU);
+        final SimulationKernel<double[]> kernel = cache.caching(sum, FIRST_WINDOW);
+
+        final double[] first = run(kernel);
+        assertEquals(3, sum.calls.get());
+        assertArrayEquals(first, run(kernel), 0.0);
+        assertEquals(3, sum.calls.get());
+        assertEquals(3L, cache.getHitCount());
+
+        // the leaf computed again gives an equal result, its parent is computed again all the same
+        cache.invalidate(LEAF_4.getID(), 0L);
+        assertArrayEquals(first, run(kernel), 0.0);
+        assertEquals(5, sum.calls.get());
+
+    }
+
+    @Test
+    public void spilledArraysAreReused() throws Exception {
+
+        final Sum sum = new Sum();
+        final ResultCache cache = new ResultCache(1L, ResultCache.Policy.LRU, UNIT, directory);
+        final SimulationKernel<double[]> kernel = cache.caching(sum, FIRST_WINDOW);
+
+        final double[] first = run(kernel);
+        assertEquals(3, sum.calls.get());
+        assertEquals(2L, cache.getSpillCount());
+        assertEquals(1, cache.size());
+
+        assertArrayEquals(first, run(kernel), 0.0);
+        assertEquals(3, sum.calls.get());
+        assertEquals(3L, cache.getDiskHitCount());
+        assertTrue(cache.getWeight() <= 1L);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertFalse(Files.newDirectoryStream(directory).iterator().hasNext());
+
+    }
+
+    /**
+     * @brief Simulate the two leaves and their parent
+     *
+     * @param[in] kernel The kernel of the nodes
+     * @return The result of the parent
+     */
+    private static double[] run(final SimulationKernel<double[]> kernel) {
+        final List<double[]> none = Collections.emptyList();
+        final double[] a = kernel.simulate(LEAF_4, null, none);
+        final double[] b = kernel.simulate(LEAF_5, null, none);
+        return kernel.simulate(NODE_2, null, Arrays.asList(a, b));
+    }
+
+    /**
+     * @brief class Sum
+     *
+     * @description Kernel adding the key of the node to the sum of the
+     *              upstream arrays, counting its calls.
+     */
+    private static final class Sum implements SimulationKernel<double[]> {
+
+        private final AtomicInteger calls = new AtomicInteger(); //!< number of simulations
+
+        public double[] simulate(final Connections connKeys, final HydroGeoArea entity,
+                                 final List<double[]> upstream) {
+            calls.incrementAndGet();
+            final double[] result = { connKeys.getID().getDouble(), 1.0 };
+            for (double[] u : upstream)
+                result[0] += u[0];
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class SimulationCheckpointTest
+ *
+ * @description Tests of the checkpoints of a <tt>TreeScheduler</tt>: a run
+ *              killed after a checkpoint is resumed from it, simulating only
+ *              the nodes which had not completed, with the results of an
+ *              uninterrupted run.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class SimulationCheckpointTest {
+
+    private static final int SIZE = 2001; //!< nodes of the basin before decoration
+    private static final long WAIT_MILLIS = 10000L; //!< longest wait for the first checkpoint
+
+    private ExecutorService executor; //!< threads of the scheduler
+    private Path directory; //!< directory of the checkpoint
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        directory = Files.createTempDirectory("checkpoints");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        for (Path file : Files.newDirectoryStream(directory))
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void runKilledAfterACheckpointIsResumed() throws Exception {
+
+        final Component reference = basin(new Killer(null, -1));
+        new TreeScheduler(reference, executor).run();
+
+        // the run is killed halfway, once a checkpoint has been written
+        final Path file = directory.resolve("run.checkpoint");
+        final Component killed = basin(new Killer(file, SIZE / 2));
+        final TreeScheduler scheduler = new TreeScheduler(killed, executor);
+        scheduler.setCheckpoints(file, 5L);
+        try {
+            scheduler.run();
+            fail("The run was not killed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        final SimulationCheckpoint checkpoint = SimulationCheckpoint.read(file);
+        final FlatTree tree = reference.subtree();
+        assertEquals(tree.size(), checkpoint.size());
+        assertTrue(checkpoint.getCompletedCount() > 0);
+        assertTrue(checkpoint.getCompletedCount() < tree.size());
+        assertTrue(!checkpoint.isCompleted(tree.root()));
+
+        final Killer counter = new Killer(null, -1);
+        final Component resumed = basin(counter);
+        new TreeScheduler(resumed, executor).resume(checkpoint);
+
+        assertEquals(tree.size() - checkpoint.getCompletedCount(), counter.calls.get());
+        assertEquals(reference.getSimulationResult(), resumed.getSimulationResult());
+
+    }
+
+    @Test
+    public void checkpointIsWrittenAndReadBack() throws Exception {
+
+        final Path file = directory.resolve("halfway.checkpoint");
+        final Component root = basin(new Killer(file, SIZE / 2));
+        final TreeScheduler scheduler = new TreeScheduler(root, executor);
+        scheduler.setCheckpoints(file, 5L);
+        try {
+            scheduler.run();
+        } catch (ExecutionException e) {
+            // killed on purpose
+        }
+
+        final SimulationCheckpoint checkpoint = SimulationCheckpoint.read(file);
+        final Path copy = directory.resolve("copy.checkpoint");
+        checkpoint.write(copy);
+        final SimulationCheckpoint read = SimulationCheckpoint.read(copy);
+
+        final FlatTree tree = root.subtree();
+        assertTrue(read.matches(tree));
+        assertEquals(checkpoint.getCompletedCount(), read.getCompletedCount());
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(checkpoint.isCompleted(i), read.isCompleted(i));
+            assertEquals(checkpoint.result(i), read.result(i));
+        }
+
+    }
+
+    /**
+     * @brief A synthetic basin whose nodes run a kernel
+     *
+     * @param[in] kernel The kernel of every node
+     * @return The root of the basin
+     */
+    private static Component basin(final SimulationKernel<Long> kernel) {
+
+        final Component root = new SyntheticBasin(SyntheticBasin.Shape.RANDOM, SIZE, 0.1, 0.05, 7L).build();
+        for (Component node : root.preOrderTraversal())
+            node.setKernel(kernel);
+
+        return root;
+
+    }
+
+    /**
+     * @brief class Killer
+     *
+     * @description Kernel summing the keys of the subtree, counting its
+     *              calls; one of the calls waits for a checkpoint with
+     *              completed nodes and then fails, killing the run.
+     */
+    private static final class Killer implements SimulationKernel<Long> {
+
+        private final Path checkpoint; //!< file to wait for before failing
+        private final int failing; //!< number of the failing call, -1 for none
+        private final AtomicInteger calls = new AtomicInteger(); //!< calls so far
+
+        private Killer(final Path checkpoint, final int failing) {
+            this.checkpoint = checkpoint;
+            this.failing = failing;
+        }
+
+        public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+
+            if (calls.incrementAndGet() == failing) {
+                final long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+                while (!hasCompletedNodes() && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(1L);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                throw new IllegalStateException("Killed after the checkpoint");
+            }
+
+            long sum = (long) connKeys.getID().getDouble().doubleValue();
+            for (Long result : upstream)
+                sum += result;
+            return sum;
+
+        }
+
+        /**
+         * @brief Whether a checkpoint with completed nodes has been written
+         *
+         * @return <code>true</code> if the checkpoint file exists and some
+         *         of its nodes are completed
+         */
+        private boolean hasCompletedNodes() {
+            try {
+                return Files.exists(checkpoint) && SimulationCheckpoint.read(checkpoint).getCompletedCount() > 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @brief class SubtreePartitionerTest
+ *
+ * @description Tests of the <tt>SubtreePartitioner</tt>: the partitions,
+ *              run one after the other, hand off the results of their
+ *              outlets through a <tt>DirectoryTransport</tt> and give the
+ *              results of the whole tree, which Partitioning#restore() gives
+ *              back unchanged.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class SubtreePartitionerTest {
+
+    private static final int PARTS = 4; //!< partitions requested
+    private static final int STEPS = 5; //!< steps of the pipelined runs
+
+    private ExecutorService executor; //!< threads of the schedulers
+    private Path directory; //!< directory of the transport
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        directory = Files.createTempDirectory("partitions");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        for (Path file : Files.newDirectoryStream(directory))
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void partitionsHandOffTheirResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+            final int size = root.subtree().size();
+            final Partitioning partitioning = partitioner().partition(root);
+            final List<Partition> partitions = partitioning.getPartitions();
+            assertTrue(shape.toString(), partitions.size() > 1);
+
+            // in postorder of the outlets the upstream partitions come first
+            int nodes = 0;
+            for (Partition partition : partitions) {
+                new TreeScheduler(partition.getRoot(), executor).run();
+                nodes += partition.size();
+            }
+            assertEquals(shape.toString(), size, nodes);
+            assertSame(root, partitions.get(partitions.size() - 1).getRoot());
+            assertEquals(shape.toString(), 0, resultFiles());
+
+            partitioning.restore();
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+        }
+
+    }
+
+    @Test
+    public void pipelinedPartitionsHandOffEveryStep() throws Exception {
+
+        final Component root = ReferenceSimulation.basin(SyntheticBasin.Shape.values()[0],
+                                                         ReferenceSimulation.ORDERED_SUM);
+        final Partitioning partitioning = partitioner().partition(root);
+        for (Partition partition : partitioning.getPartitions())
+            new PipelinedScheduler(partition.getRoot(), executor, 2).run(STEPS, null);
+        assertEquals(0, resultFiles());
+
+        partitioning.restore();
+        ReferenceSimulation.assertSequentialResults("pipelined", root);
+
+    }
+
+    @Test
+    public void restoreGivesBackTheWholeTree() {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        final List<Component> before = nodesOf(root);
+
+        final Partitioning partitioning = new SubtreePartitioner(2, CriticalPath.unitCost(),
+                                                                 new DirectoryTransport(directory, 1L, 1000L))
+            .partition(root);
+        assertEquals(2, partitioning.getPartitions().size());
+        assertTrue(root.subtree().size() < before.size());
+
+        partitioning.restore();
+        final List<Component> after = nodesOf(root);
+        assertEquals(before.size(), after.size());
+        for (Component node : after) {
+            assertFalse(node instanceof InletProxy || node instanceof OutletProxy);
+            assertTrue(before.contains(node));
+        }
+
+        // a restored tree can be partitioned again
+        assertEquals(2, new SubtreePartitioner(2, CriticalPath.unitCost(),
+                                               new DirectoryTransport(directory, 1L, 1000L))
+            .partition(root).getPartitions().size());
+
+    }
+
+    /**
+     * @brief A partitioner balancing the number of nodes, shipping the
+     *        results through the directory of the test
+     *
+     * @return The partitioner
+     */
+    private SubtreePartitioner partitioner() {
+        return new SubtreePartitioner(PARTS, CriticalPath.unitCost(), new DirectoryTransport(directory, 1L, 10000L));
+    }
+
+    /**
+     * @brief The nodes reached by the traversals of a root
+     *
+     * @param[in] root The root
+     * @return The nodes, in preorder
+     */
+    private static List<Component> nodesOf(final Component root) {
+        final List<Component> nodes = new ArrayList<Component>();
+        for (Component node : root.preOrderTraversal())
+            nodes.add(node);
+        return nodes;
+    }
+
+    /**
+     * @brief The number of results waiting in the directory
+     *
+     * @return The number of result files
+     */
+    private int resultFiles() throws Exception {
+        int count = 0;
+        for (Path file : Files.newDirectoryStream(directory, "*.result"))
+            count++;
+        return count;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class ThreadPerNodeSchedulerTest
+ *
+ * @description Tests of the <tt>ThreadPerNodeScheduler</tt>: every node,
+ *              running on its own thread, waits for the results of its
+ *              children.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class ThreadPerNodeSchedulerTest {
+
+    @Test
+    public void syntheticBasinsHaveTheSequentialResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+            new ThreadPerNodeScheduler(root, Executors.defaultThreadFactory()).run();
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+        }
+
+    }
+
+    @Test
+    public void runsCanBeRepeated() throws Exception {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        final ThreadPerNodeScheduler scheduler = new ThreadPerNodeScheduler(root, Executors.defaultThreadFactory());
+        for (int run = 0; run < 20; run++) {
+            scheduler.run();
+            ReferenceSimulation.assertSequentialResults("run " + run, root);
+        }
+
+    }
+
+    @Test
+    public void subtreesAndSingleNodesCanBeRoots() throws Exception {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        new ThreadPerNodeScheduler(root, Executors.defaultThreadFactory()).run();
+        final FlatTree tree = root.subtree();
+
+        // a GhostNode, a LocalNode and a Leaf, none of which has the key of the root
+        for (double id : new double[] { 2.0, 3.0, 4.0 }) {
+            final Component subtree = tree.component(tree.indexOf(id));
+            final Object expected = subtree.getSimulationResult();
+            new ThreadPerNodeScheduler(subtree, Executors.defaultThreadFactory()).run();
+            assertEquals("root " + id, expected, subtree.getSimulationResult());
+        }
+
+    }
+
+    @Test
+    public void failureAbortsTheRun() throws Exception {
+
+        final SimulationKernel<Long> failing = new SimulationKernel<Long>() {
+            public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+                if (connKeys.getID().getDouble() == 4.0) throw new IllegalStateException("Failure of the node 4");
+                return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+            }
+        };
+
+        final Component root = ReferenceSimulation.sampleTree(failing);
+        try {
+            new ThreadPerNodeScheduler(root, Executors.defaultThreadFactory()).run();
+            fail("The failure of the node 4 was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+    }
+
+}
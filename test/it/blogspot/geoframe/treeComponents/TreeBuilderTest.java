@@ -0,0 +1,130 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+
+/**
+ * @brief class TreeBuilderTest
+ *
+ * @description Tests of the validation of the connection table: a table
+ *              which is not a single tree rooted at the key 1 is rejected
+ *              with the list of its problems.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class TreeBuilderTest {
+
+    private static final Function<String, HydroGeoArea> NO_ENTITIES = new Function<String, HydroGeoArea>() {
+        public HydroGeoArea apply(final String reference) {
+            return null;
+        }
+    }; //!< the tables of the tests have no entities
+
+    @Test
+    public void validTableIsBuilt() {
+
+        final Component root = new TreeBuilder(NO_ENTITIES)
+            .add(1, 0, TreeBuilder.Kind.NODE, null, 2, 3)
+            .add(2, 1, TreeBuilder.Kind.LEAF, null)
+            .add(3, 1, TreeBuilder.Kind.NODE, null, 4)
+            .add(4, 3, TreeBuilder.Kind.LEAF, null)
+            .build();
+
+        assertEquals(4, root.subtree().size());
+        assertEquals(1.0, root.getConnections().getID().getDouble(), 0.0);
+
+    }
+
+    @Test
+    public void cycleDetachedFromTheRootIsRejected() {
+
+        final TreeBuilder builder = new TreeBuilder(NO_ENTITIES)
+            .add(1, 0, TreeBuilder.Kind.NODE, null, 2)
+            .add(2, 1, TreeBuilder.Kind.LEAF, null)
+            .add(3, 4, TreeBuilder.Kind.NODE, null, 4)
+            .add(4, 3, TreeBuilder.Kind.NODE, null, 3);
+
+        assertRejected(builder, "cycle");
+
+    }
+
+    @Test
+    public void cycleThroughTheRootIsRejected() {
+
+        final TreeBuilder builder = new TreeBuilder(NO_ENTITIES)
+            .add(1, 3, TreeBuilder.Kind.NODE, null, 2)
+            .add(2, 1, TreeBuilder.Kind.NODE, null, 3)
+            .add(3, 2, TreeBuilder.Kind.NODE, null, 1);
+
+        assertRejected(builder, "root 1.0 is listed among the children of 3.0");
+        assertRejected(builder, "root 1.0 has the parent 3.0 in the table");
+
+    }
+
+    @Test
+    public void orphanIsRejected() {
+
+        final TreeBuilder builder = new TreeBuilder(NO_ENTITIES)
+            .add(1, 0, TreeBuilder.Kind.NODE, null, 2)
+            .add(2, 1, TreeBuilder.Kind.LEAF, null)
+            .add(5, 9, TreeBuilder.Kind.LEAF, null);
+
+        assertRejected(builder, "orphan 5.0: parent 9.0 is not in the table");
+
+    }
+
+    @Test
+    public void missingRootIsRejected() {
+
+        final TreeBuilder builder = new TreeBuilder(NO_ENTITIES)
+            .add(2, 3, TreeBuilder.Kind.LEAF, null)
+            .add(3, 0, TreeBuilder.Kind.NODE, null, 2);
+
+        assertRejected(builder, "no root with key");
+
+    }
+
+    /**
+     * @brief Check that a table is rejected for a given problem
+     *
+     * @param[in] builder The builder holding the table
+     * @param[in] problem Part of the description of the expected problem
+     */
+    private static void assertRejected(final TreeBuilder builder, final String problem) {
+        try {
+            builder.build();
+            fail("The table was accepted, expected: " + problem);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(problem));
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+import it.blogspot.geoframe.hydroGeoEntities.area.HydroGeoArea;
+import it.blogspot.geoframe.key.Key;
+
+/**
+ * @brief class TreeSchedulerTest
+ *
+ * @description Tests of the <tt>TreeScheduler</tt>: every node is simulated
+ *              once per run, after all its children, with their results, and
+ *              the first failure aborts the run.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class TreeSchedulerTest {
+
+    private ExecutorService executor; //!< threads of the scheduler
+
+    @Before
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void parentsAreSimulatedAfterTheirChildren() throws Exception {
+
+        final Recorder recorder = new Recorder(-1.0);
+        final Component root = ReferenceSimulation.sampleTree(recorder);
+        new TreeScheduler(root, executor).run();
+
+        recorder.assertOrder(root);
+        ReferenceSimulation.assertSequentialResults("sample tree", root);
+
+    }
+
+    @Test
+    public void syntheticBasinsHaveTheSequentialResults() throws Exception {
+
+        for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+            final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+            new TreeScheduler(root, executor).run();
+            ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+        }
+
+    }
+
+    @Test
+    public void prioritiesKeepTheSequentialResults() throws Exception {
+
+        final ExecutorService prioritized = TreeScheduler.newPriorityExecutor(4);
+        try {
+            for (SyntheticBasin.Shape shape : SyntheticBasin.Shape.values()) {
+                final Component root = ReferenceSimulation.basin(shape, ReferenceSimulation.ORDERED_SUM);
+                new TreeScheduler(root, prioritized, CriticalPath.unitCost()).run();
+                ReferenceSimulation.assertSequentialResults(shape.toString(), root);
+            }
+        } finally {
+            prioritized.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void runsCanBeRepeated() throws Exception {
+
+        final Recorder recorder = new Recorder(-1.0);
+        final Component root = ReferenceSimulation.sampleTree(recorder);
+        final TreeScheduler scheduler = new TreeScheduler(root, executor);
+        for (int run = 0; run < 50; run++) {
+            recorder.simulated.clear();
+            scheduler.run();
+            recorder.assertOrder(root);
+            ReferenceSimulation.assertSequentialResults("run " + run, root);
+        }
+
+    }
+
+    @Test
+    public void subtreesAndSingleNodesCanBeRoots() throws Exception {
+
+        final Component root = ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM);
+        new TreeScheduler(root, executor).run();
+        final FlatTree tree = root.subtree();
+
+        // a GhostNode, a LocalNode and a Leaf, none of which has the key of the root
+        for (double id : new double[] { 2.0, 3.0, 4.0 }) {
+            final Component subtree = tree.component(tree.indexOf(id));
+            final Object expected = subtree.getSimulationResult();
+            new TreeScheduler(subtree, executor).run();
+            assertEquals("root " + id, expected, subtree.getSimulationResult());
+        }
+
+    }
+
+    @Test
+    public void failureAbortsTheRun() throws Exception {
+
+        final Recorder recorder = new Recorder(4.0);
+        final Component root = ReferenceSimulation.sampleTree(recorder);
+        try {
+            new TreeScheduler(root, executor).run();
+            fail("The failure of the node 4 was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(recorder.simulated.contains(2.0));
+        assertFalse(recorder.simulated.contains(1.0));
+
+    }
+
+    /**
+     * @brief class Recorder
+     *
+     * @description Kernel computing the ordered sum and recording the IDs of
+     *              the simulated nodes; the simulation of one node can fail.
+     */
+    private static final class Recorder implements SimulationKernel<Long> {
+
+        private final double failing; //!< ID of the failing node, negative for none
+        private final List<Double> simulated
+            = Collections.synchronizedList(new ArrayList<Double>()); //!< IDs in the order of simulation
+
+        private Recorder(final double failing) {
+            this.failing = failing;
+        }
+
+        public Long simulate(final Connections connKeys, final HydroGeoArea entity, final List<Long> upstream) {
+
+            final double id = connKeys.getID().getDouble();
+            if (id == failing) throw new IllegalStateException("Failure of the node " + id);
+
+            simulated.add(id);
+            return ReferenceSimulation.ORDERED_SUM.simulate(connKeys, entity, upstream);
+
+        }
+
+        /**
+         * @brief Check that every node of the tree was simulated once, after
+         *        its children
+         *
+         * @param[in] root The root of the simulated tree
+         */
+        private void assertOrder(final Component root) {
+
+            final List<Component> nodes = root.preOrderTraversal();
+            assertEquals(nodes.size(), simulated.size());
+            for (Component node : nodes) {
+                final int position = simulated.indexOf(node.getConnections().getID().getDouble());
+                assertTrue(position >= 0);
+                for (Key child : node.getConnections().getChildren())
+                    assertTrue(simulated.indexOf(child.getDouble()) < position);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * GNU GPL v3 License
+ *
+ * Copyright 2015 AboutHydrology (Riccardo Rigon)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.blogspot.geoframe.treeComponents;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.blogspot.geoframe.Connections;
+
+/**
+ * @brief class VersionedTopologyTest
+ *
+ * @description Tests of the <tt>VersionedTopology</tt>: the simulations of
+ *              two versions sharing nodes never overlap.
+ *
+ * @author agent, agent@local
+ * @version 0.1
+ * @date October 16, 2026
+ * @copyright GNU Public License v3 AboutHydrology (Riccardo Rigon)
+ */
+public class VersionedTopologyTest {
+
+    private ExecutorService executor; //!< threads of the scheduler
+
+    @Before
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void simulationsOfTwoVersionsDoNotOverlap() throws Exception {
+
+        final VersionedTopology topology
+            = new VersionedTopology(ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM));
+        final VersionedTopology.Version first = topology.beginSimulation();
+        final VersionedTopology.Version second
+            = topology.publish(Collections.<Connections>emptyList(), Collections.<Component>emptyList());
+
+        final Future<VersionedTopology.Version> next = executor.submit(new Callable<VersionedTopology.Version>() {
+            public VersionedTopology.Version call() throws InterruptedException {
+                return topology.beginSimulation();
+            }
+        });
+
+        new TreeScheduler(first.getRoot(), executor).run();
+        ReferenceSimulation.assertSequentialResults("first version", first.getRoot());
+        assertFalse(next.isDone());
+        topology.endSimulation(first);
+
+        assertSame(second, next.get(10, TimeUnit.SECONDS));
+        new TreeScheduler(second.getRoot(), executor).run();
+        ReferenceSimulation.assertSequentialResults("second version", second.getRoot());
+        topology.endSimulation(second);
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void versionNotSimulatedCannotBeReleased() throws Exception {
+
+        final VersionedTopology topology
+            = new VersionedTopology(ReferenceSimulation.sampleTree(ReferenceSimulation.ORDERED_SUM));
+        final VersionedTopology.Version first = topology.beginSimulation();
+        topology.endSimulation(first);
+        topology.endSimulation(first);
+
+    }
+
+}